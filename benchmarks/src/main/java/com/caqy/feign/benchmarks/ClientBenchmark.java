@@ -0,0 +1,85 @@
+package com.caqy.feign.benchmarks;
+
+import com.caqy.feign.FeignClientFactoryBean;
+import com.caqy.feign.OkHttpClientFactoryBean;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import feign.Headers;
+import feign.Logger;
+import feign.RequestLine;
+import feign.Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// proxies built by FeignClientFactoryBean calling an in-process HTTP server
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// without TCP_NODELAY the JDK server's separate header and body writes hit delayed ACKs and dominate the latency
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@Threads(4)
+@State(Scope.Benchmark)
+public class ClientBenchmark {
+
+    public interface ItemApi {
+        @RequestLine("GET /item")
+        Item get();
+
+        @RequestLine("POST /item")
+        @Headers("Content-Type: application/json")
+        Item post(Item item);
+    }
+
+    private HttpServer server;
+    private OkHttpClientFactoryBean okHttpClientFactoryBean;
+    private FeignClientFactoryBean<ItemApi> factoryBean;
+    private ItemApi api;
+    private Item item;
+
+    @Setup
+    public void setup() throws Exception {
+        item = Item.sample();
+        byte[] json = new ObjectMapper().writeValueAsBytes(item);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/item", exchange -> {
+            byte[] body = "POST".equals(exchange.getRequestMethod()) ? Util.toByteArray(exchange.getRequestBody()) : json;
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+
+        okHttpClientFactoryBean = new OkHttpClientFactoryBean();
+        okHttpClientFactoryBean.setMaxIdleConnections(16);
+        factoryBean = new FeignClientFactoryBean<>(ItemApi.class);
+        factoryBean.setUrl("http://localhost:" + server.getAddress().getPort());
+        factoryBean.setOkHttpClient(okHttpClientFactoryBean.getObject());
+        factoryBean.setLogLevel(Logger.Level.NONE);
+        api = factoryBean.getObject();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        factoryBean.destroy();
+        okHttpClientFactoryBean.destroy();
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    @Benchmark
+    public Item get() {
+        return api.get();
+    }
+
+    @Benchmark
+    public Item post() {
+        return api.post(item);
+    }
+}
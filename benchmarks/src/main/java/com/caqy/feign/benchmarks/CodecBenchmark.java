@@ -0,0 +1,132 @@
+package com.caqy.feign.benchmarks;
+
+import com.caqy.feign.decoder.AutoDetectDecoder;
+import com.caqy.feign.encoder.AutoDetectEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.Response;
+import feign.codec.Encoder;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.bind.JAXBContext;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// every content type branch of AutoDetectEncoder and AutoDetectDecoder
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    private AutoDetectEncoder encoder;
+    private AutoDetectDecoder decoder;
+    private Item item;
+    private Struct struct;
+    private Map<String, Object> form;
+    private Request request;
+
+    private byte[] json;
+    private byte[] xml;
+    private byte[] protobuf;
+    private byte[] html;
+
+    @Setup
+    public void setup() throws Exception {
+        encoder = new AutoDetectEncoder();
+        decoder = new AutoDetectDecoder();
+        item = Item.sample();
+        struct = Struct.newBuilder()
+                .putFields("id", Value.newBuilder().setNumberValue(item.id).build())
+                .putFields("name", Value.newBuilder().setStringValue(item.name).build())
+                .putFields("price", Value.newBuilder().setNumberValue(item.price).build())
+                .build();
+        form = new LinkedHashMap<>();
+        form.put("id", item.id);
+        form.put("name", item.name);
+        form.put("price", item.price);
+        request = Request.create(Request.HttpMethod.GET, "http://localhost/item", Collections.emptyMap(), null, StandardCharsets.UTF_8);
+
+        json = new ObjectMapper().writeValueAsBytes(item);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JAXBContext.newInstance(Item.class).createMarshaller().marshal(item, out);
+        xml = out.toByteArray();
+        protobuf = struct.toByteArray();
+        StringBuilder page = new StringBuilder("<html><head><title>items</title></head><body><ul>");
+        for (int i = 0; i < 100; i++)
+            page.append("<li class=item><a href='/items/").append(i).append("'>item ").append(i).append("</a></li>");
+        html = page.append("</ul></body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private RequestTemplate encode(Object object, Type bodyType, String contentType) {
+        RequestTemplate template = new RequestTemplate();
+        template.header("Content-Type", contentType);
+        encoder.encode(object, bodyType, template);
+        return template;
+    }
+
+    private Object decode(byte[] body, Type type, String contentType) throws Exception {
+        Map<String, Collection<String>> headers = new HashMap<>();
+        headers.put("Content-Type", Collections.singletonList(contentType));
+        Response response = Response.builder()
+                .status(200)
+                .headers(headers)
+                .body(body)
+                .request(request)
+                .build();
+        return decoder.decode(response, type);
+    }
+
+    @Benchmark
+    public RequestTemplate encodeJson() {
+        return encode(item, Item.class, "application/json");
+    }
+
+    @Benchmark
+    public RequestTemplate encodeXml() {
+        return encode(item, Item.class, "application/xml");
+    }
+
+    @Benchmark
+    public RequestTemplate encodeProtobuf() {
+        return encode(struct, Struct.class, "application/x-protobuf");
+    }
+
+    @Benchmark
+    public RequestTemplate encodeForm() {
+        return encode(form, Encoder.MAP_STRING_WILDCARD, "application/x-www-form-urlencoded");
+    }
+
+    @Benchmark
+    public Object decodeJson() throws Exception {
+        return decode(json, Item.class, "application/json");
+    }
+
+    @Benchmark
+    public Object decodeXml() throws Exception {
+        return decode(xml, Item.class, "application/xml");
+    }
+
+    @Benchmark
+    public Object decodeProtobuf() throws Exception {
+        return decode(protobuf, Struct.class, "application/x-protobuf");
+    }
+
+    @Benchmark
+    public Object decodeHtml() throws Exception {
+        return decode(html, Document.class, "text/html; charset=utf-8");
+    }
+}
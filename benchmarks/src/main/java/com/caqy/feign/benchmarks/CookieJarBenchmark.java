@@ -0,0 +1,66 @@
+package com.caqy.feign.benchmarks;
+
+import com.caqy.feign.AutoCookieJar;
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// a jar holding thousands of cookies of many domains, read and written from several threads
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class CookieJarBenchmark {
+
+    @Param({"200"})
+    public int domains;
+
+    @Param({"10"})
+    public int cookiesPerDomain;
+
+    private AutoCookieJar jar;
+    private HttpUrl[] urls;
+
+    @Setup
+    public void setup() {
+        jar = new AutoCookieJar(domains * cookiesPerDomain * 2);
+        urls = new HttpUrl[domains];
+        for (int i = 0; i < domains; i++) {
+            urls[i] = HttpUrl.parse("https://api.host" + i + ".example.com/v1/items");
+            List<Cookie> cookies = new ArrayList<>();
+            for (int j = 0; j < cookiesPerDomain; j++)
+                cookies.add(cookie(urls[i], "c" + j));
+            jar.saveFromResponse(urls[i], cookies);
+        }
+    }
+
+    private static Cookie cookie(HttpUrl url, String name) {
+        return new Cookie.Builder()
+                .name(name)
+                .value("value")
+                .domain(url.host())
+                .path("/")
+                .expiresAt(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1))
+                .build();
+    }
+
+    @Benchmark
+    public List<Cookie> load() {
+        return jar.loadForRequest(urls[ThreadLocalRandom.current().nextInt(urls.length)]);
+    }
+
+    @Benchmark
+    public void save() {
+        HttpUrl url = urls[ThreadLocalRandom.current().nextInt(urls.length)];
+        jar.saveFromResponse(url, Collections.singletonList(cookie(url, "c" + ThreadLocalRandom.current().nextInt(cookiesPerDomain))));
+    }
+}
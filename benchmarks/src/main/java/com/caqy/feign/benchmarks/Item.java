@@ -0,0 +1,26 @@
+package com.caqy.feign.benchmarks;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+@XmlRootElement(name = "item")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class Item {
+    public long id;
+    public String name;
+    public double price;
+    public List<String> tags = new ArrayList<>();
+
+    public static Item sample() {
+        Item item = new Item();
+        item.id = 42;
+        item.name = "benchmark item";
+        item.price = 12.5;
+        for (int i = 0; i < 10; i++)
+            item.tags.add("tag-" + i);
+        return item;
+    }
+}
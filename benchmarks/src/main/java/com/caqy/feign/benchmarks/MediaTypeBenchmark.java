@@ -0,0 +1,44 @@
+package com.caqy.feign.benchmarks;
+
+import com.caqy.feign.Utils;
+import okhttp3.MediaType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MediaTypeBenchmark {
+
+    private Map<String, Collection<String>> exactHeaders;
+    private Map<String, Collection<String>> lowerCaseHeaders;
+
+    @Setup
+    public void setup() {
+        // request headers keep the case they were declared with, response headers are case insensitive
+        exactHeaders = new TreeMap<>();
+        exactHeaders.put("Accept", Collections.singletonList("*/*"));
+        exactHeaders.put("Content-Type", Collections.singletonList("application/json; charset=utf-8"));
+        lowerCaseHeaders = new TreeMap<>();
+        lowerCaseHeaders.put("accept", Collections.singletonList("*/*"));
+        lowerCaseHeaders.put("content-type", Collections.singletonList("application/xml"));
+    }
+
+    @Benchmark
+    public MediaType exactCase() {
+        return Utils.getMediaTypeFromHeaders(exactHeaders);
+    }
+
+    @Benchmark
+    public MediaType lowerCase() {
+        return Utils.getMediaTypeFromHeaders(lowerCaseHeaders);
+    }
+}
@@ -5,38 +5,158 @@ import okhttp3.CookieJar;
 import okhttp3.HttpUrl;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AutoCookieJar implements CookieJar {
 
-    private static final AutoCookieJar instance = new AutoCookieJar();
+    public static final int DEFAULT_MAX_COOKIES = 3000;
 
-    private AutoCookieJar() {
-    }
+    private static final ConcurrentMap<String, AutoCookieJar> namedJars = new ConcurrentHashMap<>();
+
+    private static final AutoCookieJar instance = new AutoCookieJar();
 
+    // the jar shared by every caller that has no jar of its own
     public static AutoCookieJar getInstance() {
         return instance;
     }
 
-    private final List<Cookie> cookies = new ArrayList<>();
+    public static AutoCookieJar named(String name, int maxCookies) {
+        return namedJars.computeIfAbsent(name, key -> new AutoCookieJar(maxCookies));
+    }
+
+    // cookies indexed by their domain attribute, then by name, path and host-only flag
+    private final ConcurrentMap<String, ConcurrentMap<CookieKey, Cookie>> cookies = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final int maxCookies;
+    // eviction goes down to this size, so a full jar sorts its cookies once every tenth of its capacity, not on every save
+    private final int evictionTarget;
+
+    public AutoCookieJar() {
+        this(DEFAULT_MAX_COOKIES);
+    }
+
+    public AutoCookieJar(int maxCookies) {
+        this.maxCookies = maxCookies;
+        this.evictionTarget = maxCookies - maxCookies / 10;
+    }
+
+    public int size() {
+        return size.get();
+    }
 
     @Override
     public void saveFromResponse(HttpUrl httpUrl, List<Cookie> list) {
+        long currentTime = System.currentTimeMillis();
         for (Cookie cookie : list) {
-            long currentTime = System.currentTimeMillis();
-            cookies.removeIf(existedCookie -> existedCookie.expiresAt() < currentTime
-                    || cookie.hostOnly() == existedCookie.hostOnly()
-                    && cookie.domain().equals(existedCookie.domain())
-                    && cookie.path().equals(existedCookie.path())
-                    && cookie.name().equals(existedCookie.name()));
-            if (cookie.expiresAt() > currentTime)
-                cookies.add(cookie);
+            CookieKey key = new CookieKey(cookie);
+            if (cookie.expiresAt() > currentTime) {
+                // compute() locks only the bin of this domain, so eviction can't drop the map we are writing to
+                cookies.compute(cookie.domain(), (domain, domainCookies) -> {
+                    if (domainCookies == null)
+                        domainCookies = new ConcurrentHashMap<>();
+                    if (domainCookies.put(key, cookie) == null)
+                        size.incrementAndGet();
+                    return domainCookies;
+                });
+            } else {
+                ConcurrentMap<CookieKey, Cookie> domainCookies = cookies.get(cookie.domain());
+                if (domainCookies != null && domainCookies.remove(key) != null)
+                    size.decrementAndGet();
+            }
         }
+        if (size.get() > maxCookies)
+            evict();
     }
 
     @Override
     public List<Cookie> loadForRequest(HttpUrl httpUrl) {
-        return cookies.stream().filter(cookie -> cookie.matches(httpUrl)).collect(Collectors.toList());
+        long currentTime = System.currentTimeMillis();
+        List<Cookie> result = new ArrayList<>();
+        // a cookie can only match the request host or one of its parent domains
+        for (String domain = httpUrl.host(); domain != null; domain = parentDomain(domain)) {
+            ConcurrentMap<CookieKey, Cookie> domainCookies = cookies.get(domain);
+            if (domainCookies == null)
+                continue;
+            for (Map.Entry<CookieKey, Cookie> entry : domainCookies.entrySet()) {
+                Cookie cookie = entry.getValue();
+                if (cookie.expiresAt() <= currentTime) {
+                    if (domainCookies.remove(entry.getKey(), cookie))
+                        size.decrementAndGet();
+                } else if (cookie.matches(httpUrl)) {
+                    result.add(cookie);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true))
+            return;
+        try {
+            long currentTime = System.currentTimeMillis();
+            for (String domain : cookies.keySet()) {
+                cookies.computeIfPresent(domain, (key, domainCookies) -> {
+                    for (Map.Entry<CookieKey, Cookie> entry : domainCookies.entrySet()) {
+                        if (entry.getValue().expiresAt() <= currentTime && domainCookies.remove(entry.getKey(), entry.getValue()))
+                            size.decrementAndGet();
+                    }
+                    return domainCookies.isEmpty() ? null : domainCookies;
+                });
+            }
+
+            int overflow = size.get() - evictionTarget;
+            if (overflow > 0) {
+                List<Cookie> candidates = new ArrayList<>(size.get());
+                cookies.values().forEach(domainCookies -> candidates.addAll(domainCookies.values()));
+                candidates.sort(Comparator.comparingLong(Cookie::expiresAt));
+                for (int i = 0; i < overflow && i < candidates.size(); i++) {
+                    Cookie cookie = candidates.get(i);
+                    ConcurrentMap<CookieKey, Cookie> domainCookies = cookies.get(cookie.domain());
+                    if (domainCookies != null && domainCookies.remove(new CookieKey(cookie), cookie))
+                        size.decrementAndGet();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static String parentDomain(String domain) {
+        int index = domain.indexOf('.');
+        return index < 0 ? null : domain.substring(index + 1);
+    }
+
+    private static final class CookieKey {
+        private final String name;
+        private final String path;
+        private final boolean hostOnly;
+
+        CookieKey(Cookie cookie) {
+            this.name = cookie.name();
+            this.path = cookie.path();
+            this.hostOnly = cookie.hostOnly();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CookieKey)) return false;
+            CookieKey that = (CookieKey) o;
+            return hostOnly == that.hostOnly && name.equals(that.name) && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, path, hostOnly);
+        }
     }
 }
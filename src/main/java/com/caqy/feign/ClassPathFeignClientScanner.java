@@ -3,13 +3,13 @@ package com.caqy.feign;
 import feign.Feign;
 import feign.codec.Decoder;
 import feign.codec.Encoder;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinitionHolder;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
 import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
-import org.springframework.context.annotation.ScannedGenericBeanDefinition;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.core.type.filter.AssignableTypeFilter;
 import org.springframework.util.ClassUtils;
@@ -23,6 +23,15 @@ public class ClassPathFeignClientScanner extends ClassPathBeanDefinitionScanner
     private Class<?> markerInterface;
     private String feignBuilderName;
     private Feign.Builder feignBuilder;
+    private String okHttpClientName;
+    private boolean isolatedConnectionPool;
+    private int maxIdleConnections = 5;
+    private long keepAliveDurationMillis = 300000;
+    private boolean lazyInit;
+    private String asyncExecutorName;
+    private String encoderName;
+    private String decoderName;
+    private String metricsRegistryName;
 
     public ClassPathFeignClientScanner(BeanDefinitionRegistry registry) {
         super(registry, false);
@@ -40,6 +49,42 @@ public class ClassPathFeignClientScanner extends ClassPathBeanDefinitionScanner
         this.feignBuilder = feignBuilder;
     }
 
+    public void setOkHttpClientBeanName(String okHttpClientName) {
+        this.okHttpClientName = okHttpClientName;
+    }
+
+    public void setIsolatedConnectionPool(boolean isolatedConnectionPool) {
+        this.isolatedConnectionPool = isolatedConnectionPool;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public void setKeepAliveDurationMillis(long keepAliveDurationMillis) {
+        this.keepAliveDurationMillis = keepAliveDurationMillis;
+    }
+
+    public void setLazyInit(boolean lazyInit) {
+        this.lazyInit = lazyInit;
+    }
+
+    public void setAsyncExecutorBeanName(String asyncExecutorName) {
+        this.asyncExecutorName = asyncExecutorName;
+    }
+
+    public void setEncoderBeanName(String encoderName) {
+        this.encoderName = encoderName;
+    }
+
+    public void setDecoderBeanName(String decoderName) {
+        this.decoderName = decoderName;
+    }
+
+    public void setMetricsRegistryBeanName(String metricsRegistryName) {
+        this.metricsRegistryName = metricsRegistryName;
+    }
+
     public void registerFilters() {
 
         addIncludeFilter(new AnnotationTypeFilter(FeignClient.class));
@@ -84,18 +129,25 @@ public class ClassPathFeignClientScanner extends ClassPathBeanDefinitionScanner
     }
 
     private void processBeanDefinitions(Set<BeanDefinitionHolder> beanDefinitions) {
-        ScannedGenericBeanDefinition definition;
+        // scanning the classpath yields ScannedGenericBeanDefinitions, reading the components index AnnotatedGenericBeanDefinitions
+        GenericBeanDefinition definition;
         for (BeanDefinitionHolder holder : beanDefinitions) {
-            definition = (ScannedGenericBeanDefinition) holder.getBeanDefinition();
+            definition = (GenericBeanDefinition) holder.getBeanDefinition();
 
-            Map<String, Object> feignClientAnnotationAttr = definition.getMetadata().getAnnotationAttributes(FeignClient.class.getName());
-            String url = (String) feignClientAnnotationAttr.get("url");
+            Map<String, Object> feignClientAnnotationAttr = ((AnnotatedBeanDefinition) definition).getMetadata().getAnnotationAttributes(FeignClient.class.getName());
+            String[] urls = (String[]) feignClientAnnotationAttr.get("url");
+            String endpointProvider = (String) feignClientAnnotationAttr.get("endpointProvider");
             Class encoderClass = (Class) feignClientAnnotationAttr.get("encoderClass");
             Class decoderClass = (Class) feignClientAnnotationAttr.get("decoderClass");
 
             definition.getConstructorArgumentValues().addGenericArgumentValue(definition.getBeanClassName());
             definition.setBeanClass(FeignClientFactoryBean.class);
-            definition.getPropertyValues().add("url", url);
+            definition.getPropertyValues().add("urls", urls);
+            if (StringUtils.hasText(endpointProvider))
+                definition.getPropertyValues().add("endpointProvider", new RuntimeBeanReference(endpointProvider));
+            definition.getPropertyValues().add("loadBalancing", feignClientAnnotationAttr.get("loadBalancing"));
+            definition.getPropertyValues().add("ejectionFailureThreshold", feignClientAnnotationAttr.get("ejectionFailureThreshold"));
+            definition.getPropertyValues().add("ejectionMillis", feignClientAnnotationAttr.get("ejectionMillis"));
 
             if (StringUtils.hasText(this.feignBuilderName)) {
                 definition.getPropertyValues().add("feignBuilder", new RuntimeBeanReference(this.feignBuilderName));
@@ -103,22 +155,66 @@ public class ClassPathFeignClientScanner extends ClassPathBeanDefinitionScanner
                 definition.getPropertyValues().add("feignBuilder", this.feignBuilder);
             }
 
-            try {
-                if (!encoderClass.equals(Encoder.class))
-                    definition.getPropertyValues().add("encoder", encoderClass.newInstance());
-            } catch (InstantiationException | IllegalAccessException e) {
-                LoggerFactory.getLogger(this.getClass()).warn("error on create decoder cause by {0}", e.getCause());
-            }
+            // custom codecs are inner beans, created with the client and able to use dependency injection
+            if (!encoderClass.equals(Encoder.class))
+                definition.getPropertyValues().add("encoder", BeanDefinitionBuilder.genericBeanDefinition(encoderClass).getBeanDefinition());
+            else if (StringUtils.hasText(this.encoderName))
+                definition.getPropertyValues().add("encoder", new RuntimeBeanReference(this.encoderName));
 
-            try {
-                if (!decoderClass.equals(Decoder.class))
-                    definition.getPropertyValues().add("decoder", decoderClass.newInstance());
-            } catch (InstantiationException | IllegalAccessException e) {
-                LoggerFactory.getLogger(this.getClass()).warn("error on create decoder cause by {0}", e.getCause());
-            }
+            if (!decoderClass.equals(Decoder.class))
+                definition.getPropertyValues().add("decoder", BeanDefinitionBuilder.genericBeanDefinition(decoderClass).getBeanDefinition());
+            else if (StringUtils.hasText(this.decoderName))
+                definition.getPropertyValues().add("decoder", new RuntimeBeanReference(this.decoderName));
 
             boolean autoSetCookies = (Boolean) feignClientAnnotationAttr.getOrDefault("autoSetCookies", true);
             definition.getPropertyValues().add("autoSetCookies", autoSetCookies);
+            definition.getPropertyValues().add("cookieJarName", feignClientAnnotationAttr.get("cookieJar"));
+            definition.getPropertyValues().add("maxCookies", feignClientAnnotationAttr.get("maxCookies"));
+
+            if (StringUtils.hasText(this.okHttpClientName))
+                definition.getPropertyValues().add("okHttpClient", new RuntimeBeanReference(this.okHttpClientName));
+            boolean isolatedConnectionPool = (Boolean) feignClientAnnotationAttr.getOrDefault("isolatedConnectionPool", false);
+            definition.getPropertyValues().add("isolatedConnectionPool", this.isolatedConnectionPool || isolatedConnectionPool);
+            definition.getPropertyValues().add("maxIdleConnections", this.maxIdleConnections);
+            definition.getPropertyValues().add("keepAliveDurationMillis", this.keepAliveDurationMillis);
+            boolean lazyInit = (Boolean) feignClientAnnotationAttr.getOrDefault("lazyInit", false);
+            definition.getPropertyValues().add("lazyInit", this.lazyInit || lazyInit);
+            definition.getPropertyValues().add("responseCacheSize", feignClientAnnotationAttr.get("responseCacheSize"));
+            definition.getPropertyValues().add("responseCacheDirectory", feignClientAnnotationAttr.get("responseCacheDirectory"));
+            definition.getPropertyValues().add("responseCacheDiskSize", feignClientAnnotationAttr.get("responseCacheDiskSize"));
+            definition.getPropertyValues().add("coalesceRequests", feignClientAnnotationAttr.get("coalesceRequests"));
+            definition.getPropertyValues().add("requestKeyHeaders", feignClientAnnotationAttr.get("requestKeyHeaders"));
+            definition.getPropertyValues().add("logLevel", feignClientAnnotationAttr.get("logLevel"));
+            definition.getPropertyValues().add("logSampleRate", feignClientAnnotationAttr.get("logSampleRate"));
+            definition.getPropertyValues().add("slowCallThresholdMillis", feignClientAnnotationAttr.get("slowCallThresholdMillis"));
+            definition.getPropertyValues().add("protocol", feignClientAnnotationAttr.get("protocol"));
+            definition.getPropertyValues().add("pingIntervalMillis", feignClientAnnotationAttr.get("pingIntervalMillis"));
+            definition.getPropertyValues().add("connectTimeoutMillis", feignClientAnnotationAttr.get("connectTimeoutMillis"));
+            definition.getPropertyValues().add("readTimeoutMillis", feignClientAnnotationAttr.get("readTimeoutMillis"));
+            definition.getPropertyValues().add("writeTimeoutMillis", feignClientAnnotationAttr.get("writeTimeoutMillis"));
+            definition.getPropertyValues().add("callTimeoutMillis", feignClientAnnotationAttr.get("callTimeoutMillis"));
+            definition.getPropertyValues().add("maxAttempts", feignClientAnnotationAttr.get("maxAttempts"));
+            definition.getPropertyValues().add("retryBackoffMillis", feignClientAnnotationAttr.get("retryBackoffMillis"));
+            definition.getPropertyValues().add("maxRetryBackoffMillis", feignClientAnnotationAttr.get("maxRetryBackoffMillis"));
+            definition.getPropertyValues().add("retryBudgetPerSecond", feignClientAnnotationAttr.get("retryBudgetPerSecond"));
+            definition.getPropertyValues().add("circuitBreakerFailureThreshold", feignClientAnnotationAttr.get("circuitBreakerFailureThreshold"));
+            definition.getPropertyValues().add("circuitBreakerOpenMillis", feignClientAnnotationAttr.get("circuitBreakerOpenMillis"));
+            definition.getPropertyValues().add("bulkhead", feignClientAnnotationAttr.get("bulkhead"));
+            definition.getPropertyValues().add("bulkheadInitialLimit", feignClientAnnotationAttr.get("bulkheadInitialLimit"));
+            definition.getPropertyValues().add("bulkheadMaxLimit", feignClientAnnotationAttr.get("bulkheadMaxLimit"));
+            definition.getPropertyValues().add("bulkheadMaxQueue", feignClientAnnotationAttr.get("bulkheadMaxQueue"));
+            definition.getPropertyValues().add("bulkheadMaxWaitMillis", feignClientAnnotationAttr.get("bulkheadMaxWaitMillis"));
+            definition.getPropertyValues().add("hedgeDelayMillis", feignClientAnnotationAttr.get("hedgeDelayMillis"));
+            definition.getPropertyValues().add("hedgePercentile", feignClientAnnotationAttr.get("hedgePercentile"));
+            definition.getPropertyValues().add("hedgeBudgetPercent", feignClientAnnotationAttr.get("hedgeBudgetPercent"));
+            definition.getPropertyValues().add("requestCompression", feignClientAnnotationAttr.get("requestCompression"));
+            definition.getPropertyValues().add("requestCompressionThreshold", feignClientAnnotationAttr.get("requestCompressionThreshold"));
+
+            if (StringUtils.hasText(this.metricsRegistryName))
+                definition.getPropertyValues().add("metricsRegistry", new RuntimeBeanReference(this.metricsRegistryName));
+
+            if (StringUtils.hasText(this.asyncExecutorName))
+                definition.getPropertyValues().add("asyncExecutor", new RuntimeBeanReference(this.asyncExecutorName));
         }
     }
 
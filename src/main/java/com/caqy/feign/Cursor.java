@@ -0,0 +1,9 @@
+package com.caqy.feign;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+public interface Cursor<T> extends Iterator<T>, Closeable {
+    @Override
+    void close();
+}
@@ -0,0 +1,40 @@
+package com.caqy.feign;
+
+import feign.InvocationHandlerFactory;
+import feign.Target;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DecoratingInvocationHandlerFactory implements InvocationHandlerFactory {
+
+    private final InvocationHandlerFactory delegate;
+    private final List<MethodHandlerDecorator> decorators;
+
+    public DecoratingInvocationHandlerFactory(List<MethodHandlerDecorator> decorators) {
+        this(new InvocationHandlerFactory.Default(), decorators);
+    }
+
+    public DecoratingInvocationHandlerFactory(InvocationHandlerFactory delegate, List<MethodHandlerDecorator> decorators) {
+        this.delegate = delegate;
+        this.decorators = new ArrayList<>(decorators);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public InvocationHandler create(Target target, Map<Method, MethodHandler> dispatch) {
+        Map<Method, MethodHandler> decoratedDispatch = new LinkedHashMap<>();
+        for (Map.Entry<Method, MethodHandler> entry : dispatch.entrySet()) {
+            MethodHandler methodHandler = entry.getValue();
+            // the first decorator is the outermost one
+            for (int i = decorators.size() - 1; i >= 0; i--)
+                methodHandler = decorators.get(i).decorate(entry.getKey(), methodHandler);
+            decoratedDispatch.put(entry.getKey(), methodHandler);
+        }
+        return delegate.create(target, decoratedDispatch);
+    }
+}
@@ -1,7 +1,11 @@
 package com.caqy.feign;
 
+import com.caqy.feign.compression.Compression;
+import com.caqy.feign.loadbalancer.LoadBalancing;
+import feign.Logger;
 import feign.codec.Decoder;
 import feign.codec.Encoder;
+import org.springframework.stereotype.Indexed;
 
 import java.lang.annotation.*;
 
@@ -9,13 +13,110 @@ import java.lang.annotation.*;
 @Retention(RetentionPolicy.RUNTIME)
 @Inherited
 @Documented
+// lets spring-context-indexer list the clients at compile time, so the scanner reads the index instead of the classpath
+@Indexed
 public @interface FeignClient {
     String name() default "";
 
-    String url();
+    // requests are balanced over the URLs when there are several of them
+    String[] url() default {};
+
+    // name of an EndpointProvider bean supplying the URLs instead
+    String endpointProvider() default "";
+
+    LoadBalancing loadBalancing() default LoadBalancing.LEAST_OUTSTANDING;
+
+    // consecutive failures that eject an endpoint for ejectionMillis, 0 to never eject
+    int ejectionFailureThreshold() default 5;
+
+    long ejectionMillis() default 30000;
 
     boolean autoSetCookies() default true;
 
+    String cookieJar() default "";
+
+    int maxCookies() default AutoCookieJar.DEFAULT_MAX_COOKIES;
+
+    boolean isolatedConnectionPool() default false;
+
+    int responseCacheSize() default 0;
+
+    String responseCacheDirectory() default "";
+
+    long responseCacheDiskSize() default 10 * 1024 * 1024;
+
+    boolean coalesceRequests() default false;
+
+    // headers telling apart the calls that share a cached or coalesced response, besides the method, URL and body
+    String[] requestKeyHeaders() default {"Authorization", "Cookie", "Accept"};
+
+    Logger.Level logLevel() default Logger.Level.BASIC;
+
+    // fraction of the calls logged with their headers and bodies
+    double logSampleRate() default 0;
+
+    // calls slower than this, and calls failing with a 4xx or 5xx status, are logged with their bodies
+    long slowCallThresholdMillis() default 0;
+
+    // DEFAULT keeps the protocols of the shared OkHttpClient configured by @FeignClientScan
+    HttpProtocol protocol() default HttpProtocol.DEFAULT;
+
+    // -1 keeps the value of the shared OkHttpClient configured by @FeignClientScan
+    long pingIntervalMillis() default -1;
+
+    int connectTimeoutMillis() default -1;
+
+    int readTimeoutMillis() default -1;
+
+    int writeTimeoutMillis() default -1;
+
+    long callTimeoutMillis() default -1;
+
+    int maxAttempts() default 3;
+
+    // first retry waits up to this long, every further retry doubles it
+    long retryBackoffMillis() default 100;
+
+    // also the longest Retry-After the client waits for
+    long maxRetryBackoffMillis() default 5000;
+
+    // retries allowed per second and host, 0 for no limit
+    double retryBudgetPerSecond() default 10;
+
+    // consecutive failures that open the circuit of a host, 0 to disable circuit breaking
+    int circuitBreakerFailureThreshold() default 0;
+
+    long circuitBreakerOpenMillis() default 30000;
+
+    // limits the calls in flight to each host, adapting the limit to the observed latency
+    boolean bulkhead() default false;
+
+    int bulkheadInitialLimit() default 20;
+
+    int bulkheadMaxLimit() default 200;
+
+    // calls waiting for a slot, calls beyond it are rejected at once
+    int bulkheadMaxQueue() default 50;
+
+    long bulkheadMaxWaitMillis() default 100;
+
+    // @Idempotent methods get a second attempt when unanswered after this delay, -1 to learn it from their latency
+    long hedgeDelayMillis() default -1;
+
+    // percentile of the recent latency used as the learned delay
+    double hedgePercentile() default 95;
+
+    // hedges sent at most, as a percentage of the hedged methods calls
+    double hedgeBudgetPercent() default 5;
+
+    // methods can override both with @Compress
+    Compression requestCompression() default Compression.NONE;
+
+    int requestCompressionThreshold() default 1024;
+
+    // builds the feign target and its OkHttpClient on the first call
+    boolean lazyInit() default false;
+
     Class<? extends Encoder> encoderClass() default Encoder.class;
 
     Class<? extends Decoder> decoderClass() default Decoder.class;
@@ -1,28 +1,105 @@
 package com.caqy.feign;
 
+import com.caqy.feign.async.AsyncDecoder;
+import com.caqy.feign.async.AsyncExecutors;
+import com.caqy.feign.async.AsyncMethodHandlerDecorator;
+import com.caqy.feign.batch.MicroBatcher;
+import com.caqy.feign.cache.ResponseCache;
+import com.caqy.feign.coalesce.SingleFlight;
+import com.caqy.feign.compression.CompressingEncoder;
+import com.caqy.feign.compression.Compression;
+import com.caqy.feign.compression.DecompressingDecoder;
 import com.caqy.feign.decoder.AutoDetectDecoder;
+import com.caqy.feign.decoder.StreamingDecoder;
 import com.caqy.feign.encoder.AutoDetectEncoder;
+import com.caqy.feign.hedging.Hedging;
+import com.caqy.feign.loadbalancer.EndpointProvider;
+import com.caqy.feign.loadbalancer.LoadBalancer;
+import com.caqy.feign.loadbalancer.LoadBalancing;
+import com.caqy.feign.logging.SamplingLogger;
+import com.caqy.feign.metrics.ClientMetrics;
+import com.caqy.feign.metrics.MetricsRegistry;
+import com.caqy.feign.resilience.AdaptiveBulkhead;
+import com.caqy.feign.resilience.Resilience;
+import com.caqy.feign.streaming.StreamingBodies;
+import com.caqy.feign.streaming.StreamingOkHttpClient;
 import feign.*;
 import feign.codec.Decoder;
 import feign.codec.Encoder;
-import feign.okhttp.OkHttpClient;
-import feign.slf4j.Slf4jLogger;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
 import okhttp3.Cookie;
 import okhttp3.CookieJar;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
+import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
-public class FeignClientFactoryBean<T> implements FactoryBean<T> {
+public class FeignClientFactoryBean<T> implements FactoryBean<T>, DisposableBean {
 
     private Class<T> feignClientInterface;
-    private String url;
+    private String[] urls = {};
+    private EndpointProvider endpointProvider;
+    private LoadBalancing loadBalancing = LoadBalancing.LEAST_OUTSTANDING;
+    private int ejectionFailureThreshold = 5;
+    private long ejectionMillis = 30000;
     private Feign.Builder feignBuilder;
     private Decoder decoder = AutoDetectDecoder.getInstance();
     private Encoder encoder = AutoDetectEncoder.getInstance();
     private boolean autoSetCookies = false;
+    private String cookieJarName;
+    private int maxCookies = AutoCookieJar.DEFAULT_MAX_COOKIES;
+    private okhttp3.OkHttpClient okHttpClient;
+    private boolean isolatedConnectionPool = false;
+    private int maxIdleConnections = 5;
+    private long keepAliveDurationMillis = TimeUnit.MINUTES.toMillis(5);
+    private Executor asyncExecutor;
+    private int responseCacheSize = 0;
+    private String responseCacheDirectory;
+    private long responseCacheDiskSize = 10 * 1024 * 1024;
+    private Cache responseDiskCache;
+    private boolean coalesceRequests = false;
+    private String[] requestKeyHeaders = {"Authorization", "Cookie", "Accept"};
+    private MetricsRegistry metricsRegistry;
+    private Logger.Level logLevel = Logger.Level.BASIC;
+    private double logSampleRate = 0;
+    private long slowCallThresholdMillis = 0;
+    private HttpProtocol protocol = HttpProtocol.DEFAULT;
+    private long pingIntervalMillis = -1;
+    private int connectTimeoutMillis = -1;
+    private int readTimeoutMillis = -1;
+    private int writeTimeoutMillis = -1;
+    private long callTimeoutMillis = -1;
+    private int maxAttempts = 3;
+    private long retryBackoffMillis = 100;
+    private long maxRetryBackoffMillis = 5000;
+    private double retryBudgetPerSecond = 10;
+    private int circuitBreakerFailureThreshold = 0;
+    private long circuitBreakerOpenMillis = 30000;
+    private boolean bulkhead = false;
+    private int bulkheadInitialLimit = 20;
+    private int bulkheadMaxLimit = 200;
+    private int bulkheadMaxQueue = 50;
+    private long bulkheadMaxWaitMillis = 100;
+    private long hedgeDelayMillis = -1;
+    private double hedgePercentile = 95;
+    private double hedgeBudgetPercent = 5;
+    private Compression requestCompression = Compression.NONE;
+    private int requestCompressionThreshold = 1024;
+    private boolean lazyInit = false;
+    private okhttp3.OkHttpClient isolatedOkHttpClient;
+    private volatile T target;
 
     public FeignClientFactoryBean(Class<T> feignClientInterface) {
         this.feignClientInterface = feignClientInterface;
@@ -33,7 +110,39 @@ public class FeignClientFactoryBean<T> implements FactoryBean<T> {
     }
 
     public void setUrl(String url) {
-        this.url = url;
+        this.urls = new String[]{url};
+    }
+
+    public void setUrls(String... urls) {
+        this.urls = urls;
+    }
+
+    public void setEndpointProvider(EndpointProvider endpointProvider) {
+        this.endpointProvider = endpointProvider;
+    }
+
+    public void setLoadBalancing(LoadBalancing loadBalancing) {
+        this.loadBalancing = loadBalancing;
+    }
+
+    public void setEjectionFailureThreshold(int ejectionFailureThreshold) {
+        this.ejectionFailureThreshold = ejectionFailureThreshold;
+    }
+
+    public void setEjectionMillis(long ejectionMillis) {
+        this.ejectionMillis = ejectionMillis;
+    }
+
+    private boolean isLoadBalanced() {
+        return endpointProvider != null || urls.length > 1;
+    }
+
+    private String getUrl() {
+        if (isLoadBalanced())
+            return LoadBalancer.BASE_URL;
+        if (urls.length == 0)
+            throw new IllegalStateException("No url nor endpointProvider for " + feignClientInterface.getName());
+        return urls[0];
     }
 
     public void setDecoder(Decoder decoder) {
@@ -48,35 +157,330 @@ public class FeignClientFactoryBean<T> implements FactoryBean<T> {
         this.autoSetCookies = autoSetCookies;
     }
 
+    public void setCookieJarName(String cookieJarName) {
+        this.cookieJarName = cookieJarName;
+    }
+
+    public void setMaxCookies(int maxCookies) {
+        this.maxCookies = maxCookies;
+    }
+
+    public void setOkHttpClient(okhttp3.OkHttpClient okHttpClient) {
+        this.okHttpClient = okHttpClient;
+    }
+
+    public void setIsolatedConnectionPool(boolean isolatedConnectionPool) {
+        this.isolatedConnectionPool = isolatedConnectionPool;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public void setKeepAliveDurationMillis(long keepAliveDurationMillis) {
+        this.keepAliveDurationMillis = keepAliveDurationMillis;
+    }
+
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    public void setResponseCacheSize(int responseCacheSize) {
+        this.responseCacheSize = responseCacheSize;
+    }
+
+    public void setResponseCacheDirectory(String responseCacheDirectory) {
+        this.responseCacheDirectory = responseCacheDirectory;
+    }
+
+    public void setResponseCacheDiskSize(long responseCacheDiskSize) {
+        this.responseCacheDiskSize = responseCacheDiskSize;
+    }
+
+    public void setCoalesceRequests(boolean coalesceRequests) {
+        this.coalesceRequests = coalesceRequests;
+    }
+
+    public void setRequestKeyHeaders(String... requestKeyHeaders) {
+        this.requestKeyHeaders = requestKeyHeaders;
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    public void setLogLevel(Logger.Level logLevel) {
+        this.logLevel = logLevel;
+    }
+
+    public void setLogSampleRate(double logSampleRate) {
+        this.logSampleRate = logSampleRate;
+    }
+
+    public void setSlowCallThresholdMillis(long slowCallThresholdMillis) {
+        this.slowCallThresholdMillis = slowCallThresholdMillis;
+    }
+
+    public void setProtocol(HttpProtocol protocol) {
+        this.protocol = protocol;
+    }
+
+    public void setPingIntervalMillis(long pingIntervalMillis) {
+        this.pingIntervalMillis = pingIntervalMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(int readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    public void setWriteTimeoutMillis(int writeTimeoutMillis) {
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+
+    public void setCallTimeoutMillis(long callTimeoutMillis) {
+        this.callTimeoutMillis = callTimeoutMillis;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public void setMaxRetryBackoffMillis(long maxRetryBackoffMillis) {
+        this.maxRetryBackoffMillis = maxRetryBackoffMillis;
+    }
+
+    public void setRetryBudgetPerSecond(double retryBudgetPerSecond) {
+        this.retryBudgetPerSecond = retryBudgetPerSecond;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerOpenMillis(long circuitBreakerOpenMillis) {
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+    }
+
+    public void setBulkhead(boolean bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    public void setBulkheadInitialLimit(int bulkheadInitialLimit) {
+        this.bulkheadInitialLimit = bulkheadInitialLimit;
+    }
+
+    public void setBulkheadMaxLimit(int bulkheadMaxLimit) {
+        this.bulkheadMaxLimit = bulkheadMaxLimit;
+    }
+
+    public void setBulkheadMaxQueue(int bulkheadMaxQueue) {
+        this.bulkheadMaxQueue = bulkheadMaxQueue;
+    }
+
+    public void setBulkheadMaxWaitMillis(long bulkheadMaxWaitMillis) {
+        this.bulkheadMaxWaitMillis = bulkheadMaxWaitMillis;
+    }
+
+    public void setHedgeDelayMillis(long hedgeDelayMillis) {
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public void setHedgeBudgetPercent(double hedgeBudgetPercent) {
+        this.hedgeBudgetPercent = hedgeBudgetPercent;
+    }
+
+    public void setRequestCompression(Compression requestCompression) {
+        this.requestCompression = requestCompression;
+    }
+
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    public void setLazyInit(boolean lazyInit) {
+        this.lazyInit = lazyInit;
+    }
+
     private Feign.Builder getFeignBuilder() {
+        Resilience resilience = new Resilience(maxAttempts, retryBackoffMillis, maxRetryBackoffMillis, retryBudgetPerSecond,
+                circuitBreakerFailureThreshold, circuitBreakerOpenMillis);
+        okhttp3.OkHttpClient client = getOkHttpClient();
         if (feignBuilder == null)
             feignBuilder = Feign.builder()
-                    .logger(new Slf4jLogger())
-                    .logLevel(Logger.Level.FULL)
+                    // SamplingLogger picks the level of each call, FULL only lets it see all of them
+                    .logger(new SamplingLogger(logLevel, logSampleRate, slowCallThresholdMillis))
+                    .logLevel(logLevel == Logger.Level.NONE ? Logger.Level.NONE : Logger.Level.FULL)
                     .decode404()
-                    .options(new Request.Options(30000, 30000))
-                    .retryer(new Retryer.Default(5000, 5000, 3));
-        feignBuilder.encoder(encoder)
-                .decoder(decoder)
-                .client(getClient());
+                    // feign's OkHttpClient rebuilds the client for every request whose options differ from it
+                    .options(new Request.Options(client.connectTimeoutMillis(), client.readTimeoutMillis()))
+                    .retryer(resilience.retryer());
+        Client feignClient = new StreamingOkHttpClient(client);
+        if (bulkhead)
+            feignClient = new AdaptiveBulkhead(feignClientInterface, metricsRegistry, bulkheadInitialLimit, bulkheadMaxLimit,
+                    bulkheadMaxQueue, bulkheadMaxWaitMillis).client(feignClient);
+        // below the load balancer, so each endpoint has its own circuit breaker and retry budget
+        feignClient = resilience.client(feignClient);
+        // balanced inside the retries, so every attempt can go to another endpoint
+        if (isLoadBalanced()) {
+            List<String> endpoints = Arrays.asList(urls);
+            EndpointProvider provider = endpointProvider != null ? endpointProvider : () -> endpoints;
+            feignClient = new LoadBalancer(provider, loadBalancing, ejectionFailureThreshold, ejectionMillis).client(feignClient);
+        }
+        Executor executor = asyncExecutor != null ? asyncExecutor : AsyncExecutors.defaultExecutor(client.dispatcher());
+        // above the load balancer, so the hedge can go to another endpoint
+        if (Hedging.isHedging(feignClientInterface))
+            feignClient = new Hedging(feignClientInterface, metricsRegistry, executor, hedgeDelayMillis, hedgePercentile,
+                    hedgeBudgetPercent).client(feignClient);
+        StreamingBodies streamingBodies = new StreamingBodies();
+        Encoder feignEncoder = streamingBodies.encoder(encoder);
+        if (CompressingEncoder.isCompressing(feignClientInterface, requestCompression))
+            feignEncoder = new CompressingEncoder(feignEncoder, requestCompression, requestCompressionThreshold);
+        // decompresses before StreamingBodies, so Path, InputStream and channel results get the decoded bytes too
+        Decoder feignDecoder = new DecompressingDecoder(streamingBodies.decoder(decoder));
+        // decorators are listed from the outermost to the innermost
+        List<MethodHandlerDecorator> decorators = new ArrayList<>();
+        if (MicroBatcher.isBatching(feignClientInterface))
+            decorators.add(new MicroBatcher(feignClientInterface, executor, client.callTimeoutMillis() > 0
+                    ? client.callTimeoutMillis() : client.connectTimeoutMillis() + client.readTimeoutMillis()));
+        decorators.add(new AsyncMethodHandlerDecorator(executor));
+        if (metricsRegistry != null) {
+            ClientMetrics clientMetrics = new ClientMetrics(metricsRegistry, feignClientInterface);
+            clientMetrics.registerPoolGauges(client);
+            feignClient = clientMetrics.client(feignClient);
+            decorators.add(clientMetrics);
+        }
+        // above the metrics, so the calls sharing a response are counted once
+        SingleFlight singleFlight = new SingleFlight(feignClientInterface, coalesceRequests, Arrays.asList(requestKeyHeaders));
+        if (singleFlight.isCoalescing())
+            feignClient = singleFlight.client(feignClient);
+        if (responseCacheSize > 0) {
+            ResponseCache responseCache = new ResponseCache(feignClientInterface, responseCacheSize, Arrays.asList(requestKeyHeaders));
+            if (responseCache.isCaching())
+                feignClient = responseCache.client(feignClient);
+        }
+        decorators.add(streamingBodies);
+        decorators.add(new InvocationContext());
+
+        // responses are closed by StreamingDecoder, so Iterator, Stream and Cursor results can stay open
+        feignBuilder.encoder(feignEncoder)
+                .decoder(new StreamingDecoder(new AsyncDecoder(feignDecoder)))
+                .doNotCloseAfterDecode()
+                .client(feignClient)
+                .invocationHandlerFactory(new DecoratingInvocationHandlerFactory(decorators));
         return feignBuilder;
     }
 
-    private Client getClient() {
-        okhttp3.OkHttpClient.Builder clientBuilder = new okhttp3.OkHttpClient.Builder();
+    private okhttp3.OkHttpClient getOkHttpClient() {
+        // newBuilder() shares the connection pool and dispatcher of the container managed client
+        okhttp3.OkHttpClient.Builder clientBuilder = okHttpClient == null ? new okhttp3.OkHttpClient.Builder() : okHttpClient.newBuilder();
+        if (isolatedConnectionPool && okHttpClient != null) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(okHttpClient.dispatcher().getMaxRequests());
+            dispatcher.setMaxRequestsPerHost(okHttpClient.dispatcher().getMaxRequestsPerHost());
+            if (StreamingOkHttpClient.isLimitingSynchronousCalls(okHttpClient.dispatcher()))
+                StreamingOkHttpClient.limitSynchronousCalls(dispatcher);
+            clientBuilder.connectionPool(new ConnectionPool(maxIdleConnections, keepAliveDurationMillis, TimeUnit.MILLISECONDS))
+                    .dispatcher(dispatcher);
+        }
+        // the disk tier is OkHttp's own cache, which revalidates with conditional requests
+        if (StringUtils.hasText(responseCacheDirectory)) {
+            responseDiskCache = ResponseCache.openDiskCache(responseCacheDirectory, responseCacheDiskSize);
+            clientBuilder.cache(responseDiskCache);
+        }
+        protocol.apply(clientBuilder);
+        if (pingIntervalMillis >= 0)
+            clientBuilder.pingInterval(pingIntervalMillis, TimeUnit.MILLISECONDS);
+        if (connectTimeoutMillis >= 0)
+            clientBuilder.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (readTimeoutMillis >= 0)
+            clientBuilder.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (writeTimeoutMillis >= 0)
+            clientBuilder.writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (callTimeoutMillis >= 0)
+            clientBuilder.callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS);
         if (autoSetCookies)
-            clientBuilder.cookieJar(AutoCookieJar.getInstance());
-        return new OkHttpClient(clientBuilder.build());
+            clientBuilder.cookieJar(StringUtils.hasText(cookieJarName) ? AutoCookieJar.named(cookieJarName, maxCookies) : new AutoCookieJar(maxCookies));
+        okhttp3.OkHttpClient client = clientBuilder.build();
+        if (okHttpClient == null || isolatedConnectionPool)
+            isolatedOkHttpClient = client;
+        return client;
     }
 
     @Override
     public T getObject() {
-        Feign.Builder builder = getFeignBuilder();
-        return builder.target(feignClientInterface, url);
+        if (lazyInit)
+            return lazyProxy();
+        return getTarget();
+    }
+
+    private T getTarget() {
+        T result = target;
+        if (result == null) {
+            synchronized (this) {
+                result = target;
+                if (result == null) {
+                    if (encoder instanceof AutoDetectEncoder)
+                        ((AutoDetectEncoder) encoder).resolveMethods(feignClientInterface);
+                    // an injected builder is shared by every client, which each set their codecs and client on it
+                    // before target(), so lazy clients initialized concurrently must not interleave
+                    Object builderLock = feignBuilder != null ? feignBuilder : this;
+                    synchronized (builderLock) {
+                        target = result = getFeignBuilder().target(feignClientInterface, getUrl());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T lazyProxy() {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    if (method.getParameterCount() == 1)
+                        return proxy == args[0];
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0)
+                        return System.identityHashCode(proxy);
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0)
+                        return "LazyFeignClient(" + feignClientInterface.getName() + ", " + Arrays.toString(urls) + ")";
+                    break;
+            }
+            try {
+                return method.invoke(getTarget(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (T) Proxy.newProxyInstance(feignClientInterface.getClassLoader(), new Class<?>[]{feignClientInterface}, handler);
     }
 
     @Override
     public Class<?> getObjectType() {
         return feignClientInterface;
     }
+
+    @Override
+    public void destroy() throws IOException {
+        if (isolatedOkHttpClient != null)
+            OkHttpClientFactoryBean.release(isolatedOkHttpClient);
+        if (responseDiskCache != null)
+            ResponseCache.closeDiskCache(responseDiskCache);
+    }
 }
@@ -16,4 +16,41 @@ public @interface FeignClientScan {
     Class<?> markerInterface() default Class.class;
 
     String feignBuilderRef() default "";
+
+    String okHttpClientRef() default "";
+
+    int maxIdleConnections() default 5;
+
+    long keepAliveDurationMillis() default 300000;
+
+    // calls in flight over all the clients sharing the dispatcher, synchronous calls wait for a slot like enqueued ones
+    int maxRequests() default 256;
+
+    int maxRequestsPerHost() default 64;
+
+    boolean isolatedConnectionPool() default false;
+
+    String asyncExecutorRef() default "";
+
+    int xmlPoolSize() default 16;
+
+    String objectMapperRef() default "";
+
+    String metricsRegistryRef() default "";
+
+    boolean lazyInit() default false;
+
+    HttpProtocol protocol() default HttpProtocol.DEFAULT;
+
+    // 0 disables pings, HTTP/2 connections only
+    long pingIntervalMillis() default 0;
+
+    int connectTimeoutMillis() default 30000;
+
+    int readTimeoutMillis() default 30000;
+
+    int writeTimeoutMillis() default 30000;
+
+    // bounds the whole call including retries of OkHttp itself, 0 for no limit
+    long callTimeoutMillis() default 0;
 }
@@ -1,5 +1,10 @@
 package com.caqy.feign;
 
+import com.caqy.feign.decoder.AutoDetectDecoder;
+import com.caqy.feign.encoder.AutoDetectEncoder;
+import com.caqy.feign.metrics.DefaultMetricsRegistry;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
 import org.springframework.core.annotation.AnnotationAttributes;
@@ -11,6 +16,11 @@ import java.util.List;
 
 public class FeignClientScannerRegistrar implements ImportBeanDefinitionRegistrar {
 
+    static final String OK_HTTP_CLIENT_BEAN_NAME = "feignOkHttpClient";
+    static final String ENCODER_BEAN_NAME = "feignEncoder";
+    static final String DECODER_BEAN_NAME = "feignDecoder";
+    static final String METRICS_REGISTRY_BEAN_NAME = "feignMetricsRegistry";
+
     @Override
     public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
         AnnotationAttributes annoAttrs = AnnotationAttributes.fromMap(importingClassMetadata.getAnnotationAttributes(FeignClientScan.class.getName()));
@@ -22,6 +32,17 @@ public class FeignClientScannerRegistrar implements ImportBeanDefinitionRegistra
         }
 
         scanner.setFeignBuilderBeanName(annoAttrs.getString("feignBuilderRef"));
+        scanner.setOkHttpClientBeanName(registerOkHttpClient(annoAttrs, registry));
+        scanner.setIsolatedConnectionPool(annoAttrs.getBoolean("isolatedConnectionPool"));
+        scanner.setMaxIdleConnections(annoAttrs.getNumber("maxIdleConnections"));
+        scanner.setKeepAliveDurationMillis(annoAttrs.getNumber("keepAliveDurationMillis"));
+        scanner.setLazyInit(annoAttrs.getBoolean("lazyInit"));
+        scanner.setAsyncExecutorBeanName(annoAttrs.getString("asyncExecutorRef"));
+        String metricsRegistryName = registerMetricsRegistry(annoAttrs, registry);
+        scanner.setMetricsRegistryBeanName(metricsRegistryName);
+        registerCodecs(annoAttrs, metricsRegistryName, registry);
+        scanner.setEncoderBeanName(ENCODER_BEAN_NAME);
+        scanner.setDecoderBeanName(DECODER_BEAN_NAME);
 
         List<String> basePackages = new ArrayList<>();
         for (String pkg : annoAttrs.getStringArray("value")) {
@@ -38,4 +59,57 @@ public class FeignClientScannerRegistrar implements ImportBeanDefinitionRegistra
         scanner.doScan(StringUtils.toStringArray(basePackages));
     }
 
+    private String registerOkHttpClient(AnnotationAttributes annoAttrs, BeanDefinitionRegistry registry) {
+        String okHttpClientRef = annoAttrs.getString("okHttpClientRef");
+        if (StringUtils.hasText(okHttpClientRef))
+            return okHttpClientRef;
+
+        if (!registry.containsBeanDefinition(OK_HTTP_CLIENT_BEAN_NAME)) {
+            BeanDefinition definition = BeanDefinitionBuilder.genericBeanDefinition(OkHttpClientFactoryBean.class)
+                    .addPropertyValue("maxIdleConnections", annoAttrs.getNumber("maxIdleConnections"))
+                    .addPropertyValue("keepAliveDurationMillis", annoAttrs.getNumber("keepAliveDurationMillis"))
+                    .addPropertyValue("maxRequests", annoAttrs.getNumber("maxRequests"))
+                    .addPropertyValue("maxRequestsPerHost", annoAttrs.getNumber("maxRequestsPerHost"))
+                    .addPropertyValue("protocol", annoAttrs.getEnum("protocol"))
+                    .addPropertyValue("pingIntervalMillis", annoAttrs.getNumber("pingIntervalMillis"))
+                    .addPropertyValue("connectTimeoutMillis", annoAttrs.getNumber("connectTimeoutMillis"))
+                    .addPropertyValue("readTimeoutMillis", annoAttrs.getNumber("readTimeoutMillis"))
+                    .addPropertyValue("writeTimeoutMillis", annoAttrs.getNumber("writeTimeoutMillis"))
+                    .addPropertyValue("callTimeoutMillis", annoAttrs.getNumber("callTimeoutMillis"))
+                    .getBeanDefinition();
+            registry.registerBeanDefinition(OK_HTTP_CLIENT_BEAN_NAME, definition);
+        }
+        return OK_HTTP_CLIENT_BEAN_NAME;
+    }
+
+    private String registerMetricsRegistry(AnnotationAttributes annoAttrs, BeanDefinitionRegistry registry) {
+        String metricsRegistryRef = annoAttrs.getString("metricsRegistryRef");
+        if (StringUtils.hasText(metricsRegistryRef))
+            return metricsRegistryRef;
+
+        if (!registry.containsBeanDefinition(METRICS_REGISTRY_BEAN_NAME))
+            registry.registerBeanDefinition(METRICS_REGISTRY_BEAN_NAME, BeanDefinitionBuilder.genericBeanDefinition(DefaultMetricsRegistry.class).getBeanDefinition());
+        return METRICS_REGISTRY_BEAN_NAME;
+    }
+
+    private void registerCodecs(AnnotationAttributes annoAttrs, String metricsRegistryName, BeanDefinitionRegistry registry) {
+        String objectMapperRef = annoAttrs.getString("objectMapperRef");
+        if (!registry.containsBeanDefinition(ENCODER_BEAN_NAME)) {
+            BeanDefinitionBuilder builder = BeanDefinitionBuilder.genericBeanDefinition(AutoDetectEncoder.class)
+                    .addPropertyValue("xmlPoolSize", annoAttrs.getNumber("xmlPoolSize"))
+                    .addPropertyReference("metricsRegistry", metricsRegistryName);
+            if (StringUtils.hasText(objectMapperRef))
+                builder.addPropertyReference("objectMapper", objectMapperRef);
+            registry.registerBeanDefinition(ENCODER_BEAN_NAME, builder.getBeanDefinition());
+        }
+        if (!registry.containsBeanDefinition(DECODER_BEAN_NAME)) {
+            BeanDefinitionBuilder builder = BeanDefinitionBuilder.genericBeanDefinition(AutoDetectDecoder.class)
+                    .addPropertyValue("xmlPoolSize", annoAttrs.getNumber("xmlPoolSize"))
+                    .addPropertyReference("metricsRegistry", metricsRegistryName);
+            if (StringUtils.hasText(objectMapperRef))
+                builder.addPropertyReference("objectMapper", objectMapperRef);
+            registry.registerBeanDefinition(DECODER_BEAN_NAME, builder.getBeanDefinition());
+        }
+    }
+
 }
@@ -0,0 +1,50 @@
+package com.caqy.feign;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.net.ProtocolException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public enum HttpProtocol {
+    // keeps the protocols of the underlying client, OkHttp's own default already negotiates HTTP/2 with ALPN over TLS
+    // and falls back to HTTP/1.1
+    DEFAULT,
+    HTTP_1_1(Protocol.HTTP_1_1),
+    // HTTP/2 over TLS only, calls fail instead of falling back when the server does not negotiate h2.
+    // OkHttp wants HTTP/1.1 in the list, the interceptor rejects the connections that chose it
+    HTTP_2(Protocol.HTTP_2, Protocol.HTTP_1_1),
+    // plaintext HTTP/2 without upgrade, for internal services known to speak h2c
+    H2_PRIOR_KNOWLEDGE(Protocol.H2_PRIOR_KNOWLEDGE);
+
+    private static final Interceptor REQUIRE_HTTP_2 = chain -> {
+        Connection connection = chain.connection();
+        if (connection != null && connection.protocol() != Protocol.HTTP_2)
+            throw new ProtocolException("HTTP/2 is required but " + chain.request().url().host() + " negotiated " + connection.protocol());
+        return chain.proceed(chain.request());
+    };
+
+    private final List<Protocol> protocols;
+
+    HttpProtocol(Protocol... protocols) {
+        this.protocols = Collections.unmodifiableList(Arrays.asList(protocols));
+    }
+
+    public List<Protocol> protocols() {
+        return protocols;
+    }
+
+    // the builder may come from newBuilder() of a client requiring HTTP/2, whose interceptor must go with its protocols
+    void apply(OkHttpClient.Builder builder) {
+        if (this == DEFAULT)
+            return;
+        builder.protocols(protocols);
+        builder.networkInterceptors().remove(REQUIRE_HTTP_2);
+        if (this == HTTP_2)
+            builder.addNetworkInterceptor(REQUIRE_HTTP_2);
+    }
+}
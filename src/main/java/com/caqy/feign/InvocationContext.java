@@ -0,0 +1,31 @@
+package com.caqy.feign;
+
+import feign.InvocationHandlerFactory.MethodHandler;
+
+import java.lang.reflect.Method;
+
+// exposes the interface method being invoked to the encoder, client and decoder, which all run on the invoking thread
+public class InvocationContext implements MethodHandlerDecorator {
+
+    private static final ThreadLocal<Method> currentMethod = new ThreadLocal<>();
+
+    public static Method currentMethod() {
+        return currentMethod.get();
+    }
+
+    @Override
+    public MethodHandler decorate(Method method, MethodHandler methodHandler) {
+        return args -> {
+            Method previous = currentMethod.get();
+            currentMethod.set(method);
+            try {
+                return methodHandler.invoke(args);
+            } finally {
+                if (previous == null)
+                    currentMethod.remove();
+                else
+                    currentMethod.set(previous);
+            }
+        };
+    }
+}
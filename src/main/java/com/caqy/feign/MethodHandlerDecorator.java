@@ -0,0 +1,9 @@
+package com.caqy.feign;
+
+import feign.InvocationHandlerFactory.MethodHandler;
+
+import java.lang.reflect.Method;
+
+public interface MethodHandlerDecorator {
+    MethodHandler decorate(Method method, MethodHandler methodHandler);
+}
@@ -0,0 +1,26 @@
+package com.caqy.feign;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+public class ObjectPool<T> {
+
+    private final BlockingQueue<T> idleObjects;
+    private final Supplier<T> factory;
+
+    public ObjectPool(int maxIdle, Supplier<T> factory) {
+        this.idleObjects = new ArrayBlockingQueue<>(Math.max(1, maxIdle));
+        this.factory = factory;
+    }
+
+    public T borrow() {
+        T object = idleObjects.poll();
+        return object != null ? object : factory.get();
+    }
+
+    // objects beyond the bound are left to the garbage collector
+    public void release(T object) {
+        idleObjects.offer(object);
+    }
+}
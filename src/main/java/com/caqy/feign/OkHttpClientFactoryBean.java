@@ -0,0 +1,102 @@
+package com.caqy.feign;
+
+import com.caqy.feign.streaming.StreamingOkHttpClient;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+
+import java.util.concurrent.TimeUnit;
+
+public class OkHttpClientFactoryBean implements FactoryBean<OkHttpClient>, DisposableBean {
+
+    private int maxIdleConnections = 5;
+    private long keepAliveDurationMillis = TimeUnit.MINUTES.toMillis(5);
+    private int maxRequests = 256;
+    private int maxRequestsPerHost = 64;
+    private HttpProtocol protocol = HttpProtocol.DEFAULT;
+    private long pingIntervalMillis = 0;
+    private long connectTimeoutMillis = 30000;
+    private long readTimeoutMillis = 30000;
+    private long writeTimeoutMillis = 30000;
+    private long callTimeoutMillis = 0;
+    private OkHttpClient okHttpClient;
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public void setKeepAliveDurationMillis(long keepAliveDurationMillis) {
+        this.keepAliveDurationMillis = keepAliveDurationMillis;
+    }
+
+    public void setMaxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+    }
+
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    public void setProtocol(HttpProtocol protocol) {
+        this.protocol = protocol;
+    }
+
+    public void setPingIntervalMillis(long pingIntervalMillis) {
+        this.pingIntervalMillis = pingIntervalMillis;
+    }
+
+    public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(long readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    public void setWriteTimeoutMillis(long writeTimeoutMillis) {
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+
+    public void setCallTimeoutMillis(long callTimeoutMillis) {
+        this.callTimeoutMillis = callTimeoutMillis;
+    }
+
+    @Override
+    public synchronized OkHttpClient getObject() {
+        if (okHttpClient == null) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(maxRequests);
+            dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+            StreamingOkHttpClient.limitSynchronousCalls(dispatcher);
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveDurationMillis, TimeUnit.MILLISECONDS))
+                    .dispatcher(dispatcher)
+                    .pingInterval(pingIntervalMillis, TimeUnit.MILLISECONDS)
+                    .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS);
+            protocol.apply(builder);
+            okHttpClient = builder.build();
+        }
+        return okHttpClient;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return OkHttpClient.class;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (okHttpClient != null)
+            release(okHttpClient);
+    }
+
+    static void release(OkHttpClient okHttpClient) {
+        okHttpClient.dispatcher().executorService().shutdown();
+        okHttpClient.connectionPool().evictAll();
+    }
+}
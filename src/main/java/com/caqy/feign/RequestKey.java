@@ -0,0 +1,46 @@
+package com.caqy.feign;
+
+import feign.Request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+// identifies a built request by method, URL, body and the given headers, so calls told apart only by a header
+// set by a RequestInterceptor, like a per-user Authorization, never share a response
+public final class RequestKey {
+    private final Request.HttpMethod httpMethod;
+    private final String url;
+    private final List<Collection<String>> headerValues;
+    private final byte[] body;
+    private final int hash;
+
+    public RequestKey(Request request, Collection<String> headerNames) {
+        this.httpMethod = request.httpMethod();
+        this.url = request.url();
+        this.headerValues = new ArrayList<>(headerNames.size());
+        for (String name : headerNames) {
+            Collection<String> values = Utils.getHeaderValues(request.headers(), name);
+            // copied into lists, which compare by their elements whatever collection feign used
+            headerValues.add(values == null ? null : new ArrayList<>(values));
+        }
+        this.body = request.requestBody().asBytes();
+        this.hash = Objects.hash(httpMethod, url, headerValues) * 31 + Arrays.hashCode(body);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RequestKey)) return false;
+        RequestKey that = (RequestKey) o;
+        return hash == that.hash && httpMethod == that.httpMethod && url.equals(that.url)
+                && headerValues.equals(that.headerValues) && Arrays.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
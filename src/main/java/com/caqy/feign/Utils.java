@@ -1,19 +1,114 @@
 package com.caqy.feign;
 
+import com.caqy.feign.decoder.JacksonStreamingDecoder;
+import feign.Headers;
+import feign.RequestLine;
+import feign.Response;
+import feign.Util;
 import okhttp3.MediaType;
+import org.jsoup.nodes.Node;
 
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 
 public class Utils {
+
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final int MEDIA_TYPE_CACHE_SIZE = 256;
+    private static final ConcurrentMap<String, MediaType> mediaTypes = new ConcurrentHashMap<>();
+
     public static MediaType getMediaTypeFromHeaders(Map<String, Collection<String>> headers) {
-        return headers.entrySet().stream()
-                .filter(entry -> entry.getKey().toLowerCase().equals("content-type"))
-                .findFirst()
-                .map(Map.Entry::getValue)
-                .map(Collection::iterator)
-                .map(iterator -> iterator.hasNext() ? iterator.next() : null)
-                .map(MediaType::parse)
-                .orElse(null);
+        return parseMediaType(getContentType(headers));
+    }
+
+    public static String getContentType(Map<String, Collection<String>> headers) {
+        Collection<String> values = getHeaderValues(headers, CONTENT_TYPE);
+        if (values == null || values.isEmpty())
+            return null;
+        return values instanceof List ? ((List<String>) values).get(0) : values.iterator().next();
+    }
+
+    public static Collection<String> getHeaderValues(Map<String, Collection<String>> headers, String name) {
+        // response headers are case insensitive, so this usually hits without scanning
+        Collection<String> values = headers.get(name);
+        if (values == null) {
+            for (Map.Entry<String, Collection<String>> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey()))
+                    return entry.getValue();
+            }
+        }
+        return values;
+    }
+
+    // the Content-Type declared by @Headers, or null when it is missing or resolved from arguments
+    public static String getContentType(Method method) {
+        String contentType = getContentType(method.getAnnotation(Headers.class));
+        if (contentType == null)
+            contentType = getContentType(method.getDeclaringClass().getAnnotation(Headers.class));
+        return contentType == null || contentType.contains("{") ? null : contentType;
+    }
+
+    private static String getContentType(Headers headers) {
+        if (headers == null)
+            return null;
+        for (String header : headers.value()) {
+            int index = header.indexOf(':');
+            if (index > 0 && CONTENT_TYPE.equalsIgnoreCase(header.substring(0, index).trim()))
+                return header.substring(index + 1).trim();
+        }
+        return null;
+    }
+
+    public static String getHttpMethod(Method method) {
+        RequestLine requestLine = method.getAnnotation(RequestLine.class);
+        if (requestLine == null)
+            return null;
+        String line = requestLine.value().trim();
+        int index = line.indexOf(' ');
+        return index < 0 ? line : line.substring(0, index);
+    }
+
+    // results holding the response open, which must not be closed once decoded
+    public static boolean isStreamingResultType(Type type) {
+        Type rawType = type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type;
+        return JacksonStreamingDecoder.isStreamingType(type) || InputStream.class.equals(rawType) || ReadableByteChannel.class.equals(rawType);
+    }
+
+    // streaming and mutable document results can't be handed to more than one caller
+    public static boolean isShareableResultType(Type type) {
+        if (type instanceof ParameterizedType && CompletableFuture.class.equals(((ParameterizedType) type).getRawType()))
+            type = Util.resolveLastTypeParameter(type, CompletableFuture.class);
+        Type rawType = type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type;
+        if (!(rawType instanceof Class))
+            return true;
+        Class<?> rawClass = (Class<?>) rawType;
+        return rawClass != void.class && rawClass != Void.class && rawClass != Response.class
+                && !Iterator.class.isAssignableFrom(rawClass) && !Stream.class.isAssignableFrom(rawClass)
+                && !InputStream.class.isAssignableFrom(rawClass) && !Node.class.isAssignableFrom(rawClass)
+                && !ReadableByteChannel.class.isAssignableFrom(rawClass) && !Path.class.isAssignableFrom(rawClass);
+    }
+
+    public static MediaType parseMediaType(String contentType) {
+        if (contentType == null)
+            return null;
+        MediaType mediaType = mediaTypes.get(contentType);
+        if (mediaType == null) {
+            mediaType = MediaType.parse(contentType);
+            if (mediaType != null && mediaTypes.size() < MEDIA_TYPE_CACHE_SIZE)
+                mediaTypes.putIfAbsent(contentType, mediaType);
+        }
+        return mediaType;
     }
 }
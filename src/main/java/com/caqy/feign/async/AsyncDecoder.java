@@ -0,0 +1,37 @@
+package com.caqy.feign.async;
+
+import feign.FeignException;
+import feign.Response;
+import feign.Util;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncDecoder implements Decoder {
+
+    private final Decoder delegate;
+
+    public AsyncDecoder(Decoder delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException, FeignException {
+        if (!(type instanceof ParameterizedType) || !CompletableFuture.class.equals(((ParameterizedType) type).getRawType()))
+            return delegate.decode(response, type);
+
+        Type resultType = Util.resolveLastTypeParameter(type, CompletableFuture.class);
+        if (Void.class.equals(resultType))
+            return null;
+        if (Response.class.equals(resultType)) {
+            // the body is closed once decoding returns, so buffer it like feign does for a synchronous Response
+            if (response.body() == null)
+                return response;
+            return response.toBuilder().body(Util.toByteArray(response.body().asInputStream())).build();
+        }
+        return delegate.decode(response, resultType);
+    }
+}
@@ -0,0 +1,62 @@
+package com.caqy.feign.async;
+
+import okhttp3.Dispatcher;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncExecutors {
+
+    private static final int QUEUED_CALLS_PER_THREAD = 4;
+
+    private static final Map<Dispatcher, ExecutorService> boundedExecutors = Collections.synchronizedMap(new WeakHashMap<>());
+    private static volatile ExecutorService virtualThreadExecutor;
+    private static volatile boolean virtualThreadUnsupported;
+
+    private AsyncExecutors() {
+    }
+
+    public static ExecutorService defaultExecutor(Dispatcher dispatcher) {
+        ExecutorService executor = virtualThreadExecutor();
+        return executor != null ? executor : boundedExecutors.computeIfAbsent(dispatcher, AsyncExecutors::boundedExecutor);
+    }
+
+    // one platform thread per call the dispatcher allows in flight, a few more calls wait in the queue and the rest are rejected
+    private static ExecutorService boundedExecutor(Dispatcher dispatcher) {
+        int threads = dispatcher.getMaxRequests();
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(threads * QUEUED_CALLS_PER_THREAD), runnable -> {
+                    Thread thread = new Thread(runnable, "feign-async-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() only exists on JDK 21+
+    private static ExecutorService virtualThreadExecutor() {
+        if (virtualThreadExecutor == null && !virtualThreadUnsupported) {
+            synchronized (AsyncExecutors.class) {
+                if (virtualThreadExecutor == null && !virtualThreadUnsupported) {
+                    try {
+                        virtualThreadExecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                    } catch (ReflectiveOperationException | RuntimeException e) {
+                        LoggerFactory.getLogger(AsyncExecutors.class).debug("virtual threads are not available, fall back to a bounded thread pool");
+                        virtualThreadUnsupported = true;
+                    }
+                }
+            }
+        }
+        return virtualThreadExecutor;
+    }
+}
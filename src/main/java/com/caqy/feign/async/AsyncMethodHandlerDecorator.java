@@ -0,0 +1,44 @@
+package com.caqy.feign.async;
+
+import com.caqy.feign.MethodHandlerDecorator;
+import feign.InvocationHandlerFactory.MethodHandler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public class AsyncMethodHandlerDecorator implements MethodHandlerDecorator {
+
+    private final Executor executor;
+
+    public AsyncMethodHandlerDecorator(Executor executor) {
+        this.executor = executor;
+    }
+
+    public static boolean isAsync(Method method) {
+        return CompletableFuture.class.equals(method.getReturnType());
+    }
+
+    @Override
+    public MethodHandler decorate(Method method, MethodHandler methodHandler) {
+        if (!isAsync(method))
+            return methodHandler;
+        return args -> {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    try {
+                        future.complete(methodHandler.invoke(args));
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // a saturated executor fails the call like any other error, through the future
+                future.completeExceptionally(e);
+            }
+            return future;
+        };
+    }
+}
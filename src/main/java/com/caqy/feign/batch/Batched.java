@@ -0,0 +1,21 @@
+package com.caqy.feign.batch;
+
+import java.lang.annotation.*;
+
+// collects calls of a single-item method and sends them together through the bulk method of the same interface
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Batched {
+    // name of the bulk method, which takes a Collection, List or Set of the single-item argument
+    String value();
+
+    int maxSize() default 64;
+
+    // how long the first call of a batch waits for others
+    long maxDelayMillis() default 5;
+
+    // property of the bulk result elements matched against the argument, results are matched by position when empty,
+    // a Map result is always matched by key
+    String resultKey() default "";
+}
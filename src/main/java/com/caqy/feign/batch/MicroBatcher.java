@@ -0,0 +1,221 @@
+package com.caqy.feign.batch;
+
+import com.caqy.feign.MethodHandlerDecorator;
+import com.caqy.feign.Utils;
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.Request;
+import feign.RetryableException;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class MicroBatcher implements MethodHandlerDecorator {
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "feign-batch-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Class<?> feignClientInterface;
+    // runs the bulk calls, the timer thread only hands batches over
+    private final Executor executor;
+    // undecorated handlers of every method, bulk methods are looked up here on the first flush
+    private final ConcurrentMap<Method, MethodHandler> methodHandlers = new ConcurrentHashMap<>();
+
+    // synchronous callers wait at most this long for the bulk call after the batch is sent, 0 for no limit
+    private final long timeoutMillis;
+
+    public MicroBatcher(Class<?> feignClientInterface, Executor executor, long timeoutMillis) {
+        this.feignClientInterface = feignClientInterface;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static boolean isBatching(Class<?> feignClientInterface) {
+        for (Method method : feignClientInterface.getMethods()) {
+            if (method.isAnnotationPresent(Batched.class))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public MethodHandler decorate(Method method, MethodHandler methodHandler) {
+        methodHandlers.put(method, methodHandler);
+        Batched batched = method.getAnnotation(Batched.class);
+        if (batched == null)
+            return methodHandler;
+        if (method.getParameterCount() != 1)
+            throw new IllegalStateException("@Batched method " + method + " must take exactly one argument");
+        Batcher batcher = new Batcher(bulkMethod(batched.value()), batched);
+        boolean async = CompletableFuture.class.equals(method.getReturnType());
+        long waitMillis = timeoutMillis > 0 ? batched.maxDelayMillis() + timeoutMillis : 0;
+        return args -> {
+            CompletableFuture<Object> result = batcher.add(args[0]);
+            return async ? result : await(result, batcher.bulkMethod, waitMillis);
+        };
+    }
+
+    private Method bulkMethod(String name) {
+        for (Method method : feignClientInterface.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == 1 && Collection.class.isAssignableFrom(method.getParameterTypes()[0]))
+                return method;
+        }
+        throw new IllegalStateException("No bulk method " + name + " taking a collection on " + feignClientInterface.getName());
+    }
+
+    // fails like a feign call would, the interface methods declare no checked exception
+    private static Object await(CompletableFuture<Object> result, Method bulkMethod, long waitMillis) throws Throwable {
+        try {
+            return waitMillis > 0 ? result.get(waitMillis, TimeUnit.MILLISECONDS) : result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            throw retryable("Timed out waiting for the bulk call " + bulkMethod.getName(), bulkMethod, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw retryable("Interrupted while waiting for the bulk call " + bulkMethod.getName(), bulkMethod, e);
+        }
+    }
+
+    private static RetryableException retryable(String message, Method bulkMethod, Exception cause) {
+        String httpMethod = Utils.getHttpMethod(bulkMethod);
+        return new RetryableException(message, httpMethod == null ? null : Request.HttpMethod.valueOf(httpMethod), cause, null);
+    }
+
+    private class Batcher {
+        private final Method bulkMethod;
+        private final Batched batched;
+        // pending calls by argument, identical arguments share one slot of the bulk request
+        private Map<Object, List<CompletableFuture<Object>>> pending = new LinkedHashMap<>();
+
+        Batcher(Method bulkMethod, Batched batched) {
+            this.bulkMethod = bulkMethod;
+            this.batched = batched;
+        }
+
+        CompletableFuture<Object> add(Object key) {
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            Map<Object, List<CompletableFuture<Object>>> full = null;
+            synchronized (this) {
+                boolean first = pending.isEmpty();
+                pending.computeIfAbsent(key, k -> new ArrayList<>(1)).add(result);
+                if (pending.size() >= batched.maxSize()) {
+                    full = pending;
+                    pending = new LinkedHashMap<>();
+                } else if (first) {
+                    Map<Object, List<CompletableFuture<Object>>> batch = pending;
+                    timer.schedule(() -> flushIfPending(batch), batched.maxDelayMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+            if (full != null)
+                flush(full);
+            return result;
+        }
+
+        private void flushIfPending(Map<Object, List<CompletableFuture<Object>>> batch) {
+            synchronized (this) {
+                // the batch was already sent because it filled up
+                if (pending != batch)
+                    return;
+                pending = new LinkedHashMap<>();
+            }
+            flush(batch);
+        }
+
+        private void flush(Map<Object, List<CompletableFuture<Object>>> batch) {
+            try {
+                executor.execute(() -> send(batch));
+            } catch (RuntimeException e) {
+                // on the timer thread nobody would see it, and the callers would wait forever
+                fail(batch, e);
+            }
+        }
+
+        private void send(Map<Object, List<CompletableFuture<Object>>> batch) {
+            try {
+                Collection<Object> keys = Set.class.isAssignableFrom(bulkMethod.getParameterTypes()[0])
+                        ? new LinkedHashSet<>(batch.keySet()) : new ArrayList<>(batch.keySet());
+                Object result = methodHandlers.get(bulkMethod).invoke(new Object[]{keys});
+                if (result instanceof CompletableFuture)
+                    ((CompletableFuture<?>) result).whenComplete((value, e) -> {
+                        if (e != null)
+                            fail(batch, e);
+                        else
+                            split(batch, value);
+                    });
+                else
+                    split(batch, result);
+            } catch (Throwable e) {
+                fail(batch, e);
+            }
+        }
+
+        private void split(Map<Object, List<CompletableFuture<Object>>> batch, Object result) {
+            try {
+                if (result instanceof Map) {
+                    Map<?, ?> values = (Map<?, ?>) result;
+                    batch.forEach((key, futures) -> complete(futures, values.get(key)));
+                } else if (StringUtils.hasText(batched.resultKey())) {
+                    Map<Object, Object> values = new LinkedHashMap<>();
+                    for (Object value : (Iterable<?>) result) {
+                        if (value != null)
+                            values.put(resultKey(value), value);
+                    }
+                    batch.forEach((key, futures) -> complete(futures, values.get(key)));
+                } else {
+                    Collection<?> values = (Collection<?>) result;
+                    if (values == null || values.size() != batch.size())
+                        throw new IllegalStateException("Bulk method " + bulkMethod.getName() + " returned " + (values == null ? 0 : values.size())
+                                + " results for " + batch.size() + " arguments, set resultKey to match them by property");
+                    Iterator<?> iterator = values.iterator();
+                    batch.forEach((key, futures) -> complete(futures, iterator.next()));
+                }
+            } catch (RuntimeException e) {
+                fail(batch, e);
+            }
+        }
+
+        // a getter if there is one, the field otherwise
+        private Object resultKey(Object value) {
+            BeanWrapper bean = PropertyAccessorFactory.forBeanPropertyAccess(value);
+            if (bean.isReadableProperty(batched.resultKey()))
+                return bean.getPropertyValue(batched.resultKey());
+            return PropertyAccessorFactory.forDirectFieldAccess(value).getPropertyValue(batched.resultKey());
+        }
+
+        private void complete(List<CompletableFuture<Object>> futures, Object value) {
+            for (CompletableFuture<Object> future : futures)
+                future.complete(value);
+        }
+
+        private void fail(Map<Object, List<CompletableFuture<Object>>> batch, Throwable e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            for (List<CompletableFuture<Object>> futures : batch.values()) {
+                for (CompletableFuture<Object> future : futures)
+                    future.completeExceptionally(cause);
+            }
+        }
+    }
+}
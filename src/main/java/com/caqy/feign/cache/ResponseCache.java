@@ -0,0 +1,256 @@
+package com.caqy.feign.cache;
+
+import com.caqy.feign.InvocationContext;
+import com.caqy.feign.RequestKey;
+import com.caqy.feign.Utils;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// in-memory cache of GET responses which honors Cache-Control, Expires, Vary, ETag and Last-Modified.
+// Entries are keyed on the request as built by feign, and keep the body as bytes that every caller decodes again,
+// so no caller sees the result object of another one
+public class ResponseCache {
+
+    // OkHttp's disk cache must be the only one using its directory, clients configured with the same one share it
+    private static final Map<File, Cache> diskCaches = new HashMap<>();
+    private static final Map<Cache, Integer> diskCacheUsers = new HashMap<>();
+
+    public static synchronized Cache openDiskCache(String directory, long maxSize) {
+        File file = new File(directory);
+        try {
+            file = file.getCanonicalFile();
+        } catch (IOException e) {
+            file = file.getAbsoluteFile();
+        }
+        Cache cache = diskCaches.computeIfAbsent(file, key -> new Cache(key, maxSize));
+        diskCacheUsers.merge(cache, 1, Integer::sum);
+        return cache;
+    }
+
+    public static synchronized void closeDiskCache(Cache cache) throws IOException {
+        if (diskCacheUsers.merge(cache, -1, Integer::sum) > 0)
+            return;
+        diskCacheUsers.remove(cache);
+        diskCaches.values().remove(cache);
+        cache.close();
+    }
+
+    private final Set<Method> cachedMethods = new HashSet<>();
+    private final List<String> keyHeaders;
+    private final Map<RequestKey, CacheEntry> entries;
+
+    public ResponseCache(Class<?> feignClientInterface, int maxEntries, Collection<String> keyHeaders) {
+        for (Method method : feignClientInterface.getMethods()) {
+            if ("GET".equals(Utils.getHttpMethod(method)) && Utils.isShareableResultType(method.getGenericReturnType()))
+                cachedMethods.add(method);
+        }
+        this.keyHeaders = new ArrayList<>(keyHeaders);
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<RequestKey, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RequestKey, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public boolean isCaching() {
+        return !cachedMethods.isEmpty();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public Client client(Client delegate) {
+        return (request, options) -> {
+            if (request.httpMethod() != Request.HttpMethod.GET || !cachedMethods.contains(InvocationContext.currentMethod()))
+                return delegate.execute(request, options);
+            RequestKey key = new RequestKey(request, keyHeaders);
+            CacheEntry entry = entries.get(key);
+            if (entry != null && !entry.matchesVary(request))
+                entry = null;
+            if (entry != null && entry.isFresh())
+                return entry.toResponse(request);
+
+            Response response = delegate.execute(entry != null && entry.hasValidators() ? conditional(request, entry) : request, options);
+            if (response.status() == 304 && entry != null) {
+                Util.ensureClosed(response.body());
+                // a 304 may omit the validators, in which case the stored ones still apply
+                CacheEntry refreshed = CacheEntry.of(request, headers(response), entry.status, entry.reason, entry.headers, entry.body, entry);
+                store(key, entry, refreshed);
+                return entry.toResponse(request);
+            }
+            Headers headers = headers(response);
+            if (response.status() != 200 || !CacheEntry.isReusable(headers)) {
+                entries.remove(key, entry);
+                return response;
+            }
+            byte[] body;
+            try {
+                body = response.body() == null ? new byte[0] : Util.toByteArray(response.body().asInputStream());
+            } finally {
+                Util.ensureClosed(response.body());
+            }
+            CacheEntry stored = CacheEntry.of(request, headers, response.status(), response.reason(), response.headers(), body, null);
+            store(key, entry, stored);
+            return response.toBuilder().body(body).build();
+        };
+    }
+
+    private void store(RequestKey key, CacheEntry previous, CacheEntry entry) {
+        if (entry != null)
+            entries.put(key, entry);
+        else if (previous != null)
+            entries.remove(key, previous);
+    }
+
+    private static Request conditional(Request request, CacheEntry entry) {
+        Map<String, Collection<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(request.headers());
+        if (entry.etag != null)
+            headers.put("If-None-Match", Collections.singletonList(entry.etag));
+        if (entry.lastModified != null)
+            headers.put("If-Modified-Since", Collections.singletonList(entry.lastModified));
+        return Request.create(request.httpMethod(), request.url(), headers, request.requestBody());
+    }
+
+    private static Headers headers(Response response) {
+        Headers.Builder builder = new Headers.Builder();
+        response.headers().forEach((name, values) -> values.forEach(value -> builder.add(name, value)));
+        return builder.build();
+    }
+
+    private static final class CacheEntry {
+        private final int status;
+        private final String reason;
+        private final Map<String, Collection<String>> headers;
+        private final byte[] body;
+        private final long expiresAt;
+        private final String etag;
+        private final String lastModified;
+        // the values of the request headers named by Vary, which a later request must repeat to use this entry
+        private final Map<String, List<String>> varyValues;
+
+        private CacheEntry(int status, String reason, Map<String, Collection<String>> headers, byte[] body, long expiresAt,
+                           String etag, String lastModified, Map<String, List<String>> varyValues) {
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.body = body;
+            this.expiresAt = expiresAt;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.varyValues = varyValues;
+        }
+
+        // whether a 200 with these headers is stored, checked before its body is read
+        static boolean isReusable(Headers headers) {
+            long now = System.currentTimeMillis();
+            return isCacheable(headers) && (expiresAt(headers, now) > now || headers.get("ETag") != null || headers.get("Last-Modified") != null);
+        }
+
+        private static boolean isCacheable(Headers headers) {
+            for (String vary : headers.values("Vary")) {
+                if (vary.trim().equals("*"))
+                    return false;
+            }
+            return !CacheControl.parse(headers).noStore();
+        }
+
+        private static long expiresAt(Headers headers, long now) {
+            CacheControl cacheControl = CacheControl.parse(headers);
+            if (cacheControl.maxAgeSeconds() > 0 && !cacheControl.noCache())
+                return now + TimeUnit.SECONDS.toMillis(cacheControl.maxAgeSeconds());
+            if (cacheControl.maxAgeSeconds() < 0 && !cacheControl.noCache() && headers.get("Expires") != null)
+                return Math.max(now, parseHttpDate(headers.get("Expires")));
+            return now;
+        }
+
+        // null when the response can't be reused
+        static CacheEntry of(Request request, Headers headers, int status, String reason, Map<String, Collection<String>> responseHeaders,
+                             byte[] body, CacheEntry stale) {
+            if (!isCacheable(headers))
+                return null;
+            long now = System.currentTimeMillis();
+            long expiresAt = expiresAt(headers, now);
+            String etag = headers.get("ETag") != null ? headers.get("ETag") : stale != null ? stale.etag : null;
+            String lastModified = headers.get("Last-Modified") != null ? headers.get("Last-Modified") : stale != null ? stale.lastModified : null;
+            if (expiresAt <= now && etag == null && lastModified == null)
+                return null;
+
+            // a 304 carries the Vary of the stored response unless it sends a new one
+            List<String> varyHeaders = headers.values("Vary");
+            Map<String, List<String>> varyValues = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            if (varyHeaders.isEmpty() && stale != null) {
+                varyValues.putAll(stale.varyValues);
+            } else {
+                for (String vary : varyHeaders) {
+                    for (String name : vary.split(",")) {
+                        name = name.trim();
+                        if (!name.isEmpty())
+                            varyValues.put(name, values(request, name));
+                    }
+                }
+            }
+            return new CacheEntry(status, reason, responseHeaders, body, expiresAt, etag, lastModified, varyValues);
+        }
+
+        private static List<String> values(Request request, String name) {
+            Collection<String> values = Utils.getHeaderValues(request.headers(), name);
+            return values == null ? Collections.emptyList() : new ArrayList<>(values);
+        }
+
+        boolean matchesVary(Request request) {
+            for (Map.Entry<String, List<String>> vary : varyValues.entrySet()) {
+                if (!vary.getValue().equals(values(request, vary.getKey())))
+                    return false;
+            }
+            return true;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+
+        boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        Response toResponse(Request request) {
+            return Response.builder().status(status).reason(reason).headers(headers).request(request).body(body).build();
+        }
+
+        private static long parseHttpDate(String date) {
+            try {
+                return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.caqy.feign.coalesce;
+
+import java.lang.annotation.*;
+
+// marks an idempotent method whose identical concurrent calls share one request
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Coalesce {
+}
@@ -0,0 +1,107 @@
+package com.caqy.feign.coalesce;
+
+import com.caqy.feign.InvocationContext;
+import com.caqy.feign.RequestKey;
+import com.caqy.feign.Utils;
+import com.caqy.feign.streaming.StreamingBodies;
+import feign.Client;
+import feign.Response;
+import feign.Util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+// identical concurrent requests share the response of the first one, keyed on the request as built by feign,
+// interceptors included. Each caller decodes its own copy of the body, so no caller sees another one's result object
+public class SingleFlight {
+
+    private final Set<Method> coalescedMethods = new HashSet<>();
+    private final List<String> keyHeaders;
+    private final ConcurrentMap<RequestKey, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+
+    // when coalesceIdempotentMethods is false only methods annotated with @Coalesce are coalesced
+    public SingleFlight(Class<?> feignClientInterface, boolean coalesceIdempotentMethods, Collection<String> keyHeaders) {
+        for (Method method : feignClientInterface.getMethods()) {
+            if (isCoalesced(method, coalesceIdempotentMethods))
+                coalescedMethods.add(method);
+        }
+        this.keyHeaders = new ArrayList<>(keyHeaders);
+        // a conditional request only shares the answer of one with the same conditions
+        this.keyHeaders.add("If-None-Match");
+        this.keyHeaders.add("If-Modified-Since");
+    }
+
+    private static boolean isCoalesced(Method method, boolean coalesceIdempotentMethods) {
+        if (!Utils.isShareableResultType(method.getGenericReturnType()))
+            return false;
+        if (method.isAnnotationPresent(Coalesce.class))
+            return true;
+        String httpMethod = Utils.getHttpMethod(method);
+        return coalesceIdempotentMethods && ("GET".equals(httpMethod) || "HEAD".equals(httpMethod));
+    }
+
+    public boolean isCoalescing() {
+        return !coalescedMethods.isEmpty();
+    }
+
+    public Client client(Client delegate) {
+        return (request, options) -> {
+            // a streamed body can't be compared with the body of another call
+            if (!coalescedMethods.contains(InvocationContext.currentMethod()) || StreamingBodies.currentBody() != null)
+                return delegate.execute(request, options);
+            RequestKey key = new RequestKey(request, keyHeaders);
+            CompletableFuture<Response> call = new CompletableFuture<>();
+            CompletableFuture<Response> leader = inFlight.putIfAbsent(key, call);
+            if (leader != null)
+                return await(leader).toBuilder().request(request).build();
+
+            try {
+                Response response = buffer(delegate.execute(request, options));
+                call.complete(response);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                call.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, call);
+            }
+        };
+    }
+
+    // the body is read once and handed to every caller as bytes
+    private static Response buffer(Response response) throws IOException {
+        if (response.body() == null)
+            return response;
+        try {
+            return response.toBuilder().body(Util.toByteArray(response.body().asInputStream())).build();
+        } finally {
+            Util.ensureClosed(response.body());
+        }
+    }
+
+    private static Response await(CompletableFuture<Response> leader) throws IOException {
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the coalesced request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.caqy.feign.compression;
+
+import java.lang.annotation.*;
+
+// overrides the request compression of the feign client for one method
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Compress {
+    Compression value() default Compression.GZIP;
+
+    // bodies smaller than this are sent as is, -1 for the threshold of the feign client
+    int threshold() default -1;
+}
@@ -0,0 +1,67 @@
+package com.caqy.feign.compression;
+
+import com.caqy.feign.InvocationContext;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+// compresses the encoded body when it reaches the threshold of the client or of the method's @Compress
+public class CompressingEncoder implements Encoder {
+
+    private final Encoder delegate;
+    private final Compression compression;
+    private final int threshold;
+
+    public CompressingEncoder(Encoder delegate, Compression compression, int threshold) {
+        this.delegate = delegate;
+        this.compression = compression;
+        this.threshold = threshold;
+    }
+
+    public static boolean isCompressing(Class<?> feignClientInterface, Compression compression) {
+        if (compression != Compression.NONE)
+            return true;
+        for (Method method : feignClientInterface.getMethods()) {
+            if (method.isAnnotationPresent(Compress.class))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void encode(Object object, Type bodyType, RequestTemplate template) throws EncodeException {
+        delegate.encode(object, bodyType, template);
+
+        Compression methodCompression = compression;
+        int methodThreshold = threshold;
+        Method method = InvocationContext.currentMethod();
+        Compress compress = method == null ? null : method.getAnnotation(Compress.class);
+        if (compress != null) {
+            methodCompression = compress.value();
+            if (compress.threshold() >= 0)
+                methodThreshold = compress.threshold();
+        }
+
+        byte[] body = template.requestBody().asBytes();
+        if (methodCompression == Compression.NONE || body == null || body.length < methodThreshold
+                || template.headers().containsKey("Content-Encoding"))
+            return;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream out = methodCompression.compress(buffer)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new EncodeException("Fail to compress the request body with " + methodCompression.encoding(), e);
+        }
+        // no charset, so loggers print the compressed body as binary data
+        template.body(Request.Body.encoded(buffer.toByteArray(), null));
+        template.header("Content-Encoding", methodCompression.encoding());
+    }
+}
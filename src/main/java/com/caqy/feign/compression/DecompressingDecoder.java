@@ -0,0 +1,48 @@
+package com.caqy.feign.compression;
+
+import com.caqy.feign.Utils;
+import feign.FeignException;
+import feign.Response;
+import feign.Util;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+// decompresses bodies OkHttp left encoded, e.g. when Accept-Encoding was set by the caller, while the delegate reads them
+public class DecompressingDecoder implements Decoder {
+
+    private final Decoder delegate;
+
+    public DecompressingDecoder(Decoder delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException, FeignException {
+        Collection<String> encodings = response.headers().get("Content-Encoding");
+        Compression compression = encodings == null || encodings.isEmpty() ? null : Compression.forEncoding(encodings.iterator().next().trim());
+        if (compression == null || response.body() == null)
+            return delegate.decode(response, type);
+
+        Map<String, Collection<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(response.headers());
+        headers.remove("Content-Encoding");
+        headers.remove("Content-Length");
+        Response decompressed = response.toBuilder()
+                .headers(headers)
+                .body(compression.decompress(response.body().asInputStream()), null)
+                .build();
+        if (Utils.isStreamingResultType(type))
+            return delegate.decode(decompressed, type);
+        // closing the decompressed body also releases the native inflater
+        try {
+            return delegate.decode(decompressed, type);
+        } finally {
+            Util.ensureClosed(decompressed.body());
+        }
+    }
+}
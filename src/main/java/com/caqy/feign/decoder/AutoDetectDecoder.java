@@ -1,84 +1,72 @@
 package com.caqy.feign.decoder;
 
 import com.caqy.feign.Utils;
+import com.caqy.feign.metrics.MetricsRegistry;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import feign.FeignException;
 import feign.Response;
-import feign.Util;
 import feign.codec.DecodeException;
 import feign.codec.Decoder;
-import feign.jackson.JacksonDecoder;
 import feign.jaxb.JAXBContextFactory;
 import okhttp3.MediaType;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.Source;
-import javax.xml.transform.sax.SAXSource;
+import org.springframework.util.ClassUtils;
+
 import java.io.IOException;
-import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class AutoDetectDecoder implements Decoder {
 
+    public static final int DEFAULT_XML_POOL_SIZE = 16;
+    private static final int CONTENT_TYPE_CACHE_SIZE = 256;
+
     private Decoder jacksonDecoder;
     private Decoder jaxbDecoder;
     private Decoder protobufDecoder;
     private Decoder htmlDecoder;
     private Decoder defaultDecoder;
 
-    private AutoDetectDecoder() {
-        jacksonDecoder = new JacksonDecoder();
-        JAXBContextFactory jaxbFactory = new JAXBContextFactory.Builder()
-                .withMarshallerJAXBEncoding("UTF-8")
-                .withMarshallerFormattedOutput(Boolean.TRUE)
-                .build();
-        jaxbDecoder = (response, type) -> {
-            if (response.status() == 404) return Util.emptyValueOf(type);
-            if (response.body() == null) return null;
-            if (!(type instanceof Class)) {
-                throw new UnsupportedOperationException("JAXB only supports decoding raw types. Found " + type);
-            }
+    private MetricsRegistry metricsRegistry;
 
-            try {
-                SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-
-                saxParserFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-                saxParserFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-                saxParserFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", false);
-                saxParserFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-                saxParserFactory.setFeature("http://xml.org/sax/features/namespaces", true);
-
-                Source source = new SAXSource(saxParserFactory.newSAXParser().getXMLReader(), new InputSource(response.body().asInputStream()));
-                Unmarshaller unmarshaller = jaxbFactory.createUnmarshaller((Class) type);
-                return unmarshaller.unmarshal(source);
-            } catch (JAXBException | ParserConfigurationException | SAXException e) {
-                throw new DecodeException(e.toString(), e);
-            } finally {
-                if (response.body() != null) {
-                    response.body().close();
-                }
-            }
-        };
-        protobufDecoder = (response, type) -> {
-            Class<?> typeClass = (Class) type;
-            try {
-                Class<?> messageClass = Class.forName("com.google.protobuf.GeneratedMessageV3");
-                if (messageClass != null && messageClass.isAssignableFrom(typeClass))
-                    return typeClass.getMethod("parseFrom", InputStream.class).invoke(null, response.body().asInputStream());
-                throw new DecodeException(String.format("Fail to decode in protobufDecoder because %s is not a proto class", type.getTypeName()));
-            } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException | ClassNotFoundException e) {
-                throw new DecodeException("Fail to decode in protobufDecoder", e);
-            }
-        };
+    private final ConcurrentMap<String, Decoder> contentTypeDecoders = new ConcurrentHashMap<>();
+
+    private final JAXBContextFactory jaxbFactory = new JAXBContextFactory.Builder()
+            .withMarshallerJAXBEncoding("UTF-8")
+            .withMarshallerFormattedOutput(Boolean.TRUE)
+            .build();
+
+    public AutoDetectDecoder() {
+        // same configuration as the ObjectMapper of the default JacksonDecoder
+        jacksonDecoder = new JacksonStreamingDecoder(new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+        jaxbDecoder = new PooledJAXBDecoder(jaxbFactory, DEFAULT_XML_POOL_SIZE);
+        // protobuf-java is optional, so ProtobufDecoder must not be loaded without it
+        if (ClassUtils.isPresent("com.google.protobuf.MessageLite", AutoDetectDecoder.class.getClassLoader()))
+            protobufDecoder = new ProtobufDecoder();
+        else
+            protobufDecoder = (response, type) -> {
+                throw new DecodeException("Fail to decode in protobufDecoder because protobuf-java is not on the classpath");
+            };
         htmlDecoder = new HtmlDecoder();
         defaultDecoder = new Decoder.Default();
     }
 
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        jacksonDecoder = new JacksonStreamingDecoder(objectMapper);
+        contentTypeDecoders.clear();
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        contentTypeDecoders.clear();
+    }
+
+    public void setXmlPoolSize(int xmlPoolSize) {
+        jaxbDecoder = new PooledJAXBDecoder(jaxbFactory, xmlPoolSize);
+        contentTypeDecoders.clear();
+    }
+
     private static AutoDetectDecoder instance;
 
     public static AutoDetectDecoder getInstance() {
@@ -89,22 +77,49 @@ public class AutoDetectDecoder implements Decoder {
 
     @Override
     public Object decode(Response response, Type type) throws IOException, FeignException {
-        MediaType mediaType = Utils.getMediaTypeFromHeaders(response.headers());
-        if (mediaType == null) {
-            return defaultDecoder.decode(response, type);
-        } else {
-            switch (mediaType.subtype()) {
-                case "json":
-                    return jacksonDecoder.decode(response, type);
-                case "xml":
-                    return jaxbDecoder.decode(response, type);
-                case "x-protobuf":
-                    return protobufDecoder.decode(response, type);
-                case "html":
-                    return htmlDecoder.decode(response, type);
-                default:
-                    return defaultDecoder.decode(response, type);
-            }
+        return getDecoder(Utils.getContentType(response.headers())).decode(response, type);
+    }
+
+    private Decoder getDecoder(String contentType) {
+        if (contentType == null)
+            contentType = "";
+        Decoder decoder = contentTypeDecoders.get(contentType);
+        if (decoder == null) {
+            decoder = selectDecoder(Utils.parseMediaType(contentType));
+            if (contentTypeDecoders.size() < CONTENT_TYPE_CACHE_SIZE)
+                contentTypeDecoders.putIfAbsent(contentType, decoder);
         }
+        return decoder;
+    }
+
+    private Decoder selectDecoder(MediaType mediaType) {
+        if (mediaType == null)
+            return timed("default", defaultDecoder);
+        switch (mediaType.subtype()) {
+            case "json":
+                return timed("json", jacksonDecoder);
+            case "xml":
+                return timed("xml", jaxbDecoder);
+            case "x-protobuf":
+                return timed("protobuf", protobufDecoder);
+            case "html":
+                return timed("html", htmlDecoder);
+            default:
+                return timed("default", defaultDecoder);
+        }
+    }
+
+    private Decoder timed(String codec, Decoder decoder) {
+        if (metricsRegistry == null)
+            return decoder;
+        MetricsRegistry.Timer timer = metricsRegistry.timer("codec.decode." + codec);
+        return (response, type) -> {
+            long start = System.nanoTime();
+            try {
+                return decoder.decode(response, type);
+            } finally {
+                timer.record(System.nanoTime() - start);
+            }
+        };
     }
 }
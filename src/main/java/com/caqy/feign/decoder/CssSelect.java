@@ -0,0 +1,13 @@
+package com.caqy.feign.decoder;
+
+import java.lang.annotation.*;
+
+@Target({ElementType.METHOD, ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CssSelect {
+    String value();
+
+    // attribute to extract, such as "href" or "abs:src", the element text when empty
+    String attr() default "";
+}
@@ -1,23 +1,113 @@
 package com.caqy.feign.decoder;
 
+import com.caqy.feign.InvocationContext;
+import com.caqy.feign.Utils;
 import feign.FeignException;
 import feign.Response;
 import feign.Util;
 import feign.codec.DecodeException;
 import feign.codec.Decoder;
+import okhttp3.MediaType;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.ReflectionUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import static java.lang.String.format;
 
 public class HtmlDecoder implements Decoder {
+
+    private static final ClassValue<List<Field>> selectFields = new ClassValue<List<Field>>() {
+        @Override
+        protected List<Field> computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            ReflectionUtils.doWithFields(type, field -> {
+                ReflectionUtils.makeAccessible(field);
+                fields.add(field);
+            }, field -> field.isAnnotationPresent(CssSelect.class));
+            return fields;
+        }
+    };
+
     @Override
     public Object decode(Response response, Type type) throws IOException, FeignException {
-        if (Document.class.isAssignableFrom((Class<?>) type))
-            return Jsoup.parse(Util.toString(response.body().asReader()), response.request().url());
+        if (response.status() == 404) return Util.emptyValueOf(type);
+        if (response.body() == null) return null;
+
+        Method method = InvocationContext.currentMethod();
+        CssSelect select = method == null ? null : method.getAnnotation(CssSelect.class);
+        Class<?> rawType = getRawType(type);
+        if (select == null && !Document.class.isAssignableFrom(rawType) && selectFields.get(rawType).isEmpty())
+            throw new DecodeException(format("%s is not a type supported by this decoder.", type));
+
+        Document document;
+        // parse from the stream, jsoup falls back to the BOM and <meta> charset when the header has none
+        try (InputStream inputStream = response.body().asInputStream()) {
+            document = Jsoup.parse(inputStream, getCharsetName(response), response.request().url());
+        }
+        if (select != null)
+            return extract(document.select(select.value()), select.attr(), type);
+        if (Document.class.isAssignableFrom(rawType))
+            return document;
+        return map(document, rawType);
+    }
+
+    private static String getCharsetName(Response response) {
+        MediaType mediaType = Utils.getMediaTypeFromHeaders(response.headers());
+        return mediaType == null || mediaType.charset() == null ? null : mediaType.charset().name();
+    }
+
+    private Object extract(Elements elements, String attr, Type type) {
+        Class<?> rawType = getRawType(type);
+        if (Collection.class.isAssignableFrom(rawType)) {
+            Type elementType = Util.resolveLastTypeParameter(type, Collection.class);
+            List<Object> values = new ArrayList<>(elements.size());
+            for (Element element : elements)
+                values.add(extract(element, attr, elementType));
+            return values;
+        }
+        return elements.isEmpty() ? Util.emptyValueOf(type) : extract(elements.first(), attr, type);
+    }
+
+    private Object extract(Element element, String attr, Type type) {
+        Class<?> rawType = getRawType(type);
+        if (!selectFields.get(rawType).isEmpty())
+            return map(element, rawType);
+        if (Element.class.isAssignableFrom(rawType))
+            return element;
+        String value = attr.isEmpty() ? element.text() : element.attr(attr);
+        return DefaultConversionService.getSharedInstance().convert(value, rawType);
+    }
+
+    private Object map(Element element, Class<?> type) {
+        Object instance = BeanUtils.instantiateClass(type);
+        for (Field field : selectFields.get(type)) {
+            CssSelect select = field.getAnnotation(CssSelect.class);
+            Object value = extract(element.select(select.value()), select.attr(), field.getGenericType());
+            if (value != null)
+                ReflectionUtils.setField(field, instance, value);
+        }
+        return instance;
+    }
+
+    private static Class<?> getRawType(Type type) {
+        if (type instanceof ParameterizedType)
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        if (type instanceof Class)
+            return (Class<?>) type;
         throw new DecodeException(format("%s is not a type supported by this decoder.", type));
     }
 }
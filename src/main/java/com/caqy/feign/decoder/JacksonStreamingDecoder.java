@@ -0,0 +1,140 @@
+package com.caqy.feign.decoder;
+
+import com.caqy.feign.Cursor;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import feign.FeignException;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import feign.jackson.JacksonDecoder;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class JacksonStreamingDecoder implements Decoder {
+
+    private final ObjectMapper mapper;
+    private final Decoder jacksonDecoder;
+
+    public JacksonStreamingDecoder(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.jacksonDecoder = new JacksonDecoder(mapper);
+    }
+
+    public static boolean isStreamingType(Type type) {
+        Type rawType = type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type;
+        return Iterator.class.equals(rawType) || Cursor.class.equals(rawType) || Stream.class.equals(rawType);
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException, FeignException {
+        if (!isStreamingType(type))
+            return jacksonDecoder.decode(response, type);
+
+        Class<?> rawType = (Class<?>) (type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type);
+        Cursor<?> cursor;
+        if (response.status() == 404 || response.body() == null) {
+            Util.ensureClosed(response.body());
+            cursor = new EmptyCursor<>();
+        } else {
+            cursor = new JacksonCursor<>(response, mapper.readerFor(mapper.constructType(Util.resolveLastTypeParameter(type, rawType))));
+        }
+        if (Stream.class.equals(rawType))
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false).onClose(cursor::close);
+        return cursor;
+    }
+
+    // decodes one element of the top level json array at a time, the response stays open until it is drained or closed
+    private class JacksonCursor<T> implements Cursor<T> {
+        private final Response response;
+        private final ObjectReader objectReader;
+        private final JsonParser parser;
+        private T next;
+        // set while next holds an element not returned yet, which may be a json null
+        private boolean pending;
+        private boolean closed;
+
+        JacksonCursor(Response response, ObjectReader objectReader) throws IOException {
+            this.response = response;
+            this.objectReader = objectReader;
+            this.parser = mapper.getFactory().createParser(response.body().asInputStream());
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                close();
+            } else if (token != JsonToken.START_ARRAY) {
+                close();
+                throw new DecodeException(String.format("Fail to stream json because the body starts with %s instead of an array", token));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending)
+                return true;
+            if (closed)
+                return false;
+            try {
+                JsonToken token = parser.nextToken();
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    close();
+                    return false;
+                }
+                next = objectReader.readValue(parser);
+                pending = true;
+                return true;
+            } catch (IOException e) {
+                close();
+                throw new DecodeException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T result = next;
+            next = null;
+            pending = false;
+            return result;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                Util.ensureClosed(parser);
+                Util.ensureClosed(response);
+            }
+        }
+    }
+
+    private static class EmptyCursor<T> implements Cursor<T> {
+        private final Iterator<T> iterator = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
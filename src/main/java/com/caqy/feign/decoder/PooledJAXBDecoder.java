@@ -0,0 +1,92 @@
+package com.caqy.feign.decoder;
+
+import com.caqy.feign.ObjectPool;
+import feign.FeignException;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import feign.jaxb.JAXBContextFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class PooledJAXBDecoder implements Decoder {
+
+    private final JAXBContextFactory jaxbContextFactory;
+    private final int poolSize;
+    private final ConcurrentMap<Class<?>, ObjectPool<Unmarshaller>> unmarshallerPools = new ConcurrentHashMap<>();
+    private final SAXParserFactory saxParserFactory;
+    private final ObjectPool<XMLReader> xmlReaderPool;
+
+    public PooledJAXBDecoder(JAXBContextFactory jaxbContextFactory, int poolSize) {
+        this.jaxbContextFactory = jaxbContextFactory;
+        this.poolSize = poolSize;
+        try {
+            saxParserFactory = SAXParserFactory.newInstance();
+            saxParserFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            saxParserFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            saxParserFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", false);
+            saxParserFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            saxParserFactory.setFeature("http://xml.org/sax/features/namespaces", true);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("Fail to configure SAXParserFactory", e);
+        }
+        xmlReaderPool = new ObjectPool<>(poolSize, this::createXMLReader);
+    }
+
+    // SAXParserFactory is not guaranteed to be thread safe
+    private XMLReader createXMLReader() {
+        synchronized (saxParserFactory) {
+            try {
+                return saxParserFactory.newSAXParser().getXMLReader();
+            } catch (ParserConfigurationException | SAXException e) {
+                throw new DecodeException(e.toString(), e);
+            }
+        }
+    }
+
+    private ObjectPool<Unmarshaller> getUnmarshallerPool(Class<?> type) {
+        return unmarshallerPools.computeIfAbsent(type, key -> new ObjectPool<>(poolSize, () -> {
+            try {
+                return jaxbContextFactory.createUnmarshaller(key);
+            } catch (JAXBException e) {
+                throw new DecodeException(e.toString(), e);
+            }
+        }));
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException, FeignException {
+        if (response.status() == 404) return Util.emptyValueOf(type);
+        if (response.body() == null) return null;
+        if (!(type instanceof Class)) {
+            throw new UnsupportedOperationException("JAXB only supports decoding raw types. Found " + type);
+        }
+
+        ObjectPool<Unmarshaller> unmarshallerPool = getUnmarshallerPool((Class<?>) type);
+        Unmarshaller unmarshaller = unmarshallerPool.borrow();
+        XMLReader xmlReader = xmlReaderPool.borrow();
+        try {
+            Object result = unmarshaller.unmarshal(new SAXSource(xmlReader, new InputSource(response.body().asInputStream())));
+            // only instances that finished cleanly go back to the pools
+            unmarshallerPool.release(unmarshaller);
+            xmlReaderPool.release(xmlReader);
+            return result;
+        } catch (JAXBException e) {
+            throw new DecodeException(e.toString(), e);
+        } finally {
+            response.body().close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.caqy.feign.decoder;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import feign.FeignException;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Type;
+
+import static java.lang.String.format;
+
+public class ProtobufDecoder implements Decoder {
+
+    // the parser of a message type is resolved once through its generated static parser() method
+    private static final ClassValue<Parser<?>> parsers = new ClassValue<Parser<?>>() {
+        @Override
+        protected Parser<?> computeValue(Class<?> type) {
+            try {
+                return (Parser<?>) MethodHandles.publicLookup()
+                        .findStatic(type, "parser", MethodType.methodType(Parser.class))
+                        .invoke();
+            } catch (Throwable e) {
+                throw new DecodeException(format("Fail to resolve the parser of %s", type.getName()), e);
+            }
+        }
+    };
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException, FeignException {
+        if (response.status() == 404) return Util.emptyValueOf(type);
+        if (response.body() == null) return null;
+        if (!(type instanceof Class) || !MessageLite.class.isAssignableFrom((Class<?>) type))
+            throw new DecodeException(format("Fail to decode in protobufDecoder because %s is not a proto class", type.getTypeName()));
+
+        try (InputStream inputStream = response.body().asInputStream()) {
+            return parsers.get((Class<?>) type).parseFrom(inputStream);
+        } catch (InvalidProtocolBufferException e) {
+            throw new DecodeException("Fail to decode in protobufDecoder", e);
+        }
+    }
+}
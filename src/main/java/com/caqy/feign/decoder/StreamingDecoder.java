@@ -0,0 +1,36 @@
+package com.caqy.feign.decoder;
+
+import com.caqy.feign.Utils;
+import feign.FeignException;
+import feign.Response;
+import feign.Util;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+
+// feign is told not to close responses after decoding, so this closes all of them except streaming results
+public class StreamingDecoder implements Decoder {
+
+    private final Decoder delegate;
+
+    public StreamingDecoder(Decoder delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException, FeignException {
+        Type resultType = type;
+        if (type instanceof ParameterizedType && CompletableFuture.class.equals(((ParameterizedType) type).getRawType()))
+            resultType = Util.resolveLastTypeParameter(type, CompletableFuture.class);
+        if (Utils.isStreamingResultType(resultType))
+            return delegate.decode(response, type);
+        try {
+            return delegate.decode(response, type);
+        } finally {
+            Util.ensureClosed(response.body());
+        }
+    }
+}
@@ -1,54 +1,76 @@
 package com.caqy.feign.encoder;
 
+import com.caqy.feign.InvocationContext;
 import com.caqy.feign.Utils;
-import feign.Request;
+import com.caqy.feign.metrics.MetricsRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import feign.RequestTemplate;
 import feign.codec.EncodeException;
 import feign.codec.Encoder;
 import feign.form.FormEncoder;
 import feign.jackson.JacksonEncoder;
 import feign.jaxb.JAXBContextFactory;
-import feign.jaxb.JAXBEncoder;
 import okhttp3.MediaType;
+import org.springframework.util.ClassUtils;
 
-import java.io.ByteArrayOutputStream;
-import java.io.OutputStream;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class AutoDetectEncoder implements Encoder {
 
+    public static final int DEFAULT_XML_POOL_SIZE = 16;
+    private static final int CONTENT_TYPE_CACHE_SIZE = 256;
+
     private Encoder jacksonEncoder;
     private Encoder jaxbEncoder;
     private Encoder protoEncoder;
     private Encoder formEncoder;
     private Encoder defaultEncoder;
 
-    private AutoDetectEncoder() {
+    private MetricsRegistry metricsRegistry;
+
+    private final ConcurrentMap<String, Encoder> contentTypeEncoders = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Method, Encoder> methodEncoders = new ConcurrentHashMap<>();
+
+    private final JAXBContextFactory jaxbFactory = new JAXBContextFactory.Builder()
+            .withMarshallerJAXBEncoding("UTF-8")
+            .withMarshallerFormattedOutput(Boolean.TRUE)
+            .build();
+
+    public AutoDetectEncoder() {
         jacksonEncoder = new JacksonEncoder();
-        JAXBContextFactory jaxbFactory = new JAXBContextFactory.Builder()
-                .withMarshallerJAXBEncoding("UTF-8")
-                .withMarshallerFormattedOutput(Boolean.TRUE)
-                .build();
-        jaxbEncoder = new JAXBEncoder(jaxbFactory);
-        protoEncoder = (object, body, template) -> {
-            Class<?> typeClass = (Class) body;
-            try {
-                Class<?> messageClass = Class.forName("com.google.protobuf.GeneratedMessageV3");
-                if (messageClass != null && messageClass.isAssignableFrom(typeClass)) {
-                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                    typeClass.getMethod("writeTo", OutputStream.class).invoke(object, outputStream);
-                    template.body(Request.Body.encoded(outputStream.toByteArray(), null));
-                }
-                throw new EncodeException(String.format("Fail to encode in protobufEncoder because %s is not a proto class", body.getTypeName()));
-            } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException | ClassNotFoundException e) {
-                throw new EncodeException("Fail to encode in protobufEncoder", e);
-            }
-        };
+        jaxbEncoder = new PooledJAXBEncoder(jaxbFactory, DEFAULT_XML_POOL_SIZE);
+        // protobuf-java is optional, so ProtobufEncoder must not be loaded without it
+        if (ClassUtils.isPresent("com.google.protobuf.MessageLite", AutoDetectEncoder.class.getClassLoader()))
+            protoEncoder = new ProtobufEncoder();
+        else
+            protoEncoder = (object, body, template) -> {
+                throw new EncodeException("Fail to encode in protobufEncoder because protobuf-java is not on the classpath");
+            };
         formEncoder = new FormEncoder();
         defaultEncoder = new Encoder.Default();
     }
 
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        jacksonEncoder = new JacksonEncoder(objectMapper);
+        contentTypeEncoders.clear();
+        methodEncoders.clear();
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        contentTypeEncoders.clear();
+        methodEncoders.clear();
+    }
+
+    public void setXmlPoolSize(int xmlPoolSize) {
+        jaxbEncoder = new PooledJAXBEncoder(jaxbFactory, xmlPoolSize);
+        contentTypeEncoders.clear();
+        methodEncoders.clear();
+    }
+
     private static AutoDetectEncoder instance;
 
     public static AutoDetectEncoder getInstance() {
@@ -57,30 +79,65 @@ public class AutoDetectEncoder implements Encoder {
         return instance;
     }
 
+    // resolves the encoder of every method whose Content-Type is fixed by @Headers
+    public void resolveMethods(Class<?> feignClientInterface) {
+        for (Method method : feignClientInterface.getMethods()) {
+            String contentType = Utils.getContentType(method);
+            if (contentType != null)
+                methodEncoders.put(method, getEncoder(contentType));
+        }
+    }
+
     @Override
     public void encode(Object object, Type bodyType, RequestTemplate template) throws EncodeException {
-        MediaType mediaType = Utils.getMediaTypeFromHeaders(template.headers());
-        if (mediaType == null) {
-            defaultEncoder.encode(object, bodyType, template);
-        } else {
-            switch (mediaType.subtype()) {
-                case "json":
-                    jacksonEncoder.encode(object, bodyType, template);
-                    break;
-                case "xml":
-                    jaxbEncoder.encode(object, bodyType, template);
-                    break;
-                case "x-protobuf":
-                    protoEncoder.encode(object, bodyType, template);
-                    break;
-                case "form-data":
-                case "x-www-form-urlencoded":
-                    formEncoder.encode(object, bodyType, template);
-                    break;
-                default:
-                    defaultEncoder.encode(object, bodyType, template);
-                    break;
-            }
+        Method method = InvocationContext.currentMethod();
+        Encoder encoder = method == null ? null : methodEncoders.get(method);
+        if (encoder == null)
+            encoder = getEncoder(Utils.getContentType(template.headers()));
+        encoder.encode(object, bodyType, template);
+    }
+
+    private Encoder getEncoder(String contentType) {
+        if (contentType == null)
+            contentType = "";
+        Encoder encoder = contentTypeEncoders.get(contentType);
+        if (encoder == null) {
+            encoder = selectEncoder(Utils.parseMediaType(contentType));
+            if (contentTypeEncoders.size() < CONTENT_TYPE_CACHE_SIZE)
+                contentTypeEncoders.putIfAbsent(contentType, encoder);
         }
+        return encoder;
+    }
+
+    private Encoder selectEncoder(MediaType mediaType) {
+        if (mediaType == null)
+            return timed("default", defaultEncoder);
+        switch (mediaType.subtype()) {
+            case "json":
+                return timed("json", jacksonEncoder);
+            case "xml":
+                return timed("xml", jaxbEncoder);
+            case "x-protobuf":
+                return timed("protobuf", protoEncoder);
+            case "form-data":
+            case "x-www-form-urlencoded":
+                return timed("form", formEncoder);
+            default:
+                return timed("default", defaultEncoder);
+        }
+    }
+
+    private Encoder timed(String codec, Encoder encoder) {
+        if (metricsRegistry == null)
+            return encoder;
+        MetricsRegistry.Timer timer = metricsRegistry.timer("codec.encode." + codec);
+        return (object, bodyType, template) -> {
+            long start = System.nanoTime();
+            try {
+                encoder.encode(object, bodyType, template);
+            } finally {
+                timer.record(System.nanoTime() - start);
+            }
+        };
     }
 }
@@ -0,0 +1,56 @@
+package com.caqy.feign.encoder;
+
+import com.caqy.feign.ObjectPool;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import feign.jaxb.JAXBContextFactory;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class PooledJAXBEncoder implements Encoder {
+
+    private final JAXBContextFactory jaxbContextFactory;
+    private final int poolSize;
+    private final ConcurrentMap<Class<?>, ObjectPool<Marshaller>> marshallerPools = new ConcurrentHashMap<>();
+
+    public PooledJAXBEncoder(JAXBContextFactory jaxbContextFactory, int poolSize) {
+        this.jaxbContextFactory = jaxbContextFactory;
+        this.poolSize = poolSize;
+    }
+
+    private ObjectPool<Marshaller> getMarshallerPool(Class<?> type) {
+        return marshallerPools.computeIfAbsent(type, key -> new ObjectPool<>(poolSize, () -> {
+            try {
+                return jaxbContextFactory.createMarshaller(key);
+            } catch (JAXBException e) {
+                throw new EncodeException(e.toString(), e);
+            }
+        }));
+    }
+
+    @Override
+    public void encode(Object object, Type bodyType, RequestTemplate template) throws EncodeException {
+        if (!(bodyType instanceof Class)) {
+            throw new UnsupportedOperationException("JAXB only supports encoding raw types. Found " + bodyType);
+        }
+
+        ObjectPool<Marshaller> marshallerPool = getMarshallerPool((Class<?>) bodyType);
+        Marshaller marshaller = marshallerPool.borrow();
+        try {
+            StringWriter stringWriter = new StringWriter();
+            marshaller.marshal(object, stringWriter);
+            marshallerPool.release(marshaller);
+            template.body(Request.Body.encoded(stringWriter.toString().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        } catch (JAXBException e) {
+            throw new EncodeException(e.toString(), e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.caqy.feign.encoder;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import static java.lang.String.format;
+
+public class ProtobufEncoder implements Encoder {
+    @Override
+    public void encode(Object object, Type bodyType, RequestTemplate template) throws EncodeException {
+        if (!(object instanceof MessageLite))
+            throw new EncodeException(format("Fail to encode in protobufEncoder because %s is not a proto class", bodyType.getTypeName()));
+
+        MessageLite message = (MessageLite) object;
+        // write straight into an exactly sized buffer, which becomes the request body without another copy
+        byte[] buffer = new byte[message.getSerializedSize()];
+        CodedOutputStream outputStream = CodedOutputStream.newInstance(buffer);
+        try {
+            message.writeTo(outputStream);
+            outputStream.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new EncodeException("Fail to encode in protobufEncoder", e);
+        }
+        template.body(Request.Body.encoded(buffer, null));
+    }
+}
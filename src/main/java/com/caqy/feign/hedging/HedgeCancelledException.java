@@ -0,0 +1,13 @@
+package com.caqy.feign.hedging;
+
+import java.io.IOException;
+
+// thrown by the attempt that lost to the other one, it is neither a failure of the host nor of the call
+public class HedgeCancelledException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public HedgeCancelledException(IOException cause) {
+        super("Attempt cancelled, the other attempt answered first", cause);
+    }
+}
@@ -0,0 +1,281 @@
+package com.caqy.feign.hedging;
+
+import com.caqy.feign.InvocationContext;
+import com.caqy.feign.metrics.ClientMetrics;
+import com.caqy.feign.metrics.LatencyHistogram;
+import com.caqy.feign.metrics.MetricsRegistry;
+import com.caqy.feign.streaming.StreamingBodies;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import okhttp3.Call;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// sends a second attempt of the @Idempotent calls still unanswered after a delay,
+// the first response wins and the other attempt is cancelled
+public class Hedging {
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "feign-hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // the learned delay is the percentile of the current window, or of the previous one while the current is filling
+    private static final int WINDOW_SAMPLES = 1024;
+    private static final int MIN_SAMPLES = 32;
+    private static final int REFRESH_SAMPLES = 16;
+    // the budget is kept in thousandths of a hedge, and saves up to this many hedges for a burst
+    private static final long HEDGE_COST = 1000;
+    private static final long MAX_CREDITS = 10 * HEDGE_COST;
+
+    private static final int RUNNING = 0;
+    private static final int PRIMARY_WON = 1;
+    private static final int HEDGE_WON = 2;
+
+    private static final ThreadLocal<Attempt> currentAttempt = new ThreadLocal<>();
+
+    public static boolean isHedging(Class<?> feignClientInterface) {
+        for (Method method : feignClientInterface.getMethods()) {
+            if (method.isAnnotationPresent(Idempotent.class))
+                return true;
+        }
+        return false;
+    }
+
+    // called with every okhttp call, so the attempt running on this thread can cancel it
+    public static void register(Call call) {
+        Attempt attempt = currentAttempt.get();
+        if (attempt != null)
+            attempt.setCall(call);
+    }
+
+    // runs the hedges, the timer thread only hands them over
+    private final Executor executor;
+    private final long delayNanos;
+    private final double percentile;
+    private final long creditsPerCall;
+    private final AtomicLong credits = new AtomicLong();
+    private final Map<Method, LatencyWindow> latencies = new HashMap<>();
+    private final MetricsRegistry.Counter sent;
+    private final MetricsRegistry.Counter won;
+
+    public Hedging(Class<?> feignClientInterface, MetricsRegistry metricsRegistry, Executor executor, long delayMillis, double percentile, double budgetPercent) {
+        this.executor = executor;
+        this.delayNanos = delayMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.percentile = percentile;
+        this.creditsPerCall = Math.round(budgetPercent * HEDGE_COST / 100);
+        for (Method method : feignClientInterface.getMethods()) {
+            if (method.isAnnotationPresent(Idempotent.class))
+                latencies.put(method, new LatencyWindow());
+        }
+        String prefix = ClientMetrics.metricsPrefix(feignClientInterface) + ".hedges";
+        this.sent = metricsRegistry == null ? null : metricsRegistry.counter(prefix + ".sent");
+        this.won = metricsRegistry == null ? null : metricsRegistry.counter(prefix + ".won");
+    }
+
+    public Client client(Client delegate) {
+        return (request, options) -> {
+            Method method = InvocationContext.currentMethod();
+            LatencyWindow window = method == null ? null : latencies.get(method);
+            // a streamed body can only be sent once
+            if (window == null || StreamingBodies.currentBody() != null)
+                return delegate.execute(request, options);
+            earnCredits();
+            long delay = delayNanos >= 0 ? delayNanos : window.delayNanos;
+            HedgedCall call = new HedgedCall(delegate, request, options, window);
+            return delay < 0 ? call.attempt(call.primary) : call.execute(delay);
+        };
+    }
+
+    private void earnCredits() {
+        long current;
+        do {
+            current = credits.get();
+            if (current >= MAX_CREDITS)
+                return;
+        } while (!credits.compareAndSet(current, Math.min(MAX_CREDITS, current + creditsPerCall)));
+    }
+
+    private boolean spendCredits() {
+        long current;
+        do {
+            current = credits.get();
+            if (current < HEDGE_COST)
+                return false;
+        } while (!credits.compareAndSet(current, current - HEDGE_COST));
+        return true;
+    }
+
+    private class HedgedCall {
+        private final Client delegate;
+        private final Request request;
+        private final Request.Options options;
+        private final LatencyWindow window;
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        private final Attempt primary = new Attempt();
+        private final Attempt hedge = new Attempt();
+        // claimed by the hedge when it starts, or by a failed primary attempt so a hedge still queued never runs
+        private final AtomicBoolean hedgeClaimed = new AtomicBoolean();
+        // completed with null when the hedge is not sent or loses
+        private final CompletableFuture<Response> hedged = new CompletableFuture<>();
+
+        HedgedCall(Client delegate, Request request, Request.Options options, LatencyWindow window) {
+            this.delegate = delegate;
+            this.request = request;
+            this.options = options;
+            this.window = window;
+        }
+
+        Response execute(long delayNanos) throws IOException {
+            ScheduledFuture<?> scheduled = timer.schedule(this::sendHedge, delayNanos, TimeUnit.NANOSECONDS);
+            Response response;
+            try {
+                response = attempt(primary);
+            } catch (IOException | RuntimeException e) {
+                // with a bounded executor the hedge may still be queued behind calls waiting like this one
+                if (state.get() != HEDGE_WON && (scheduled.cancel(false) || hedgeClaimed.compareAndSet(false, true)))
+                    throw e;
+                // the hedge is on its way, it may still answer the call
+                Response hedgeResponse = null;
+                try {
+                    hedgeResponse = awaitHedge();
+                } catch (IOException | RuntimeException hedgeFailure) {
+                    e.addSuppressed(hedgeFailure);
+                }
+                if (hedgeResponse == null)
+                    throw e;
+                return hedgeResponse;
+            }
+            if (state.compareAndSet(RUNNING, PRIMARY_WON)) {
+                scheduled.cancel(false);
+                hedge.cancel();
+                return response;
+            }
+            response.close();
+            return awaitHedge();
+        }
+
+        private void sendHedge() {
+            if (state.get() != RUNNING || !spendCredits()) {
+                hedged.complete(null);
+                return;
+            }
+            try {
+                executor.execute(this::runHedge);
+            } catch (RejectedExecutionException e) {
+                hedged.complete(null);
+            }
+        }
+
+        private void runHedge() {
+            if (!hedgeClaimed.compareAndSet(false, true) || state.get() != RUNNING) {
+                hedged.complete(null);
+                return;
+            }
+            if (sent != null)
+                sent.increment();
+            Response response;
+            try {
+                response = attempt(hedge);
+            } catch (IOException | RuntimeException e) {
+                hedged.completeExceptionally(e);
+                return;
+            }
+            if (state.compareAndSet(RUNNING, HEDGE_WON)) {
+                if (won != null)
+                    won.increment();
+                // completed before the primary attempt is cancelled, so it finds the response
+                hedged.complete(response);
+                primary.cancel();
+            } else {
+                response.close();
+                hedged.complete(null);
+            }
+        }
+
+        Response attempt(Attempt attempt) throws IOException {
+            currentAttempt.set(attempt);
+            long start = System.nanoTime();
+            try {
+                Response response = delegate.execute(request, options);
+                window.record(System.nanoTime() - start);
+                return response;
+            } finally {
+                currentAttempt.remove();
+            }
+        }
+
+        private Response awaitHedge() throws IOException {
+            try {
+                return hedged.get();
+            } catch (InterruptedException e) {
+                hedge.cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the hedged request");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private static class Attempt {
+        private Call call;
+        private boolean cancelled;
+
+        synchronized void setCall(Call call) {
+            this.call = call;
+            if (cancelled)
+                call.cancel();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (call != null)
+                call.cancel();
+        }
+    }
+
+    private class LatencyWindow {
+        private final AtomicLong samples = new AtomicLong();
+        private volatile LatencyHistogram current = new LatencyHistogram();
+        private volatile LatencyHistogram previous;
+        // -1 until enough latencies are known, calls are not hedged until then
+        private volatile long delayNanos = -1;
+
+        void record(long nanos) {
+            LatencyHistogram histogram = current;
+            histogram.record(nanos);
+            long count = samples.incrementAndGet();
+            if (count % WINDOW_SAMPLES == 0) {
+                previous = histogram;
+                current = new LatencyHistogram();
+            }
+            if (count >= MIN_SAMPLES && count % REFRESH_SAMPLES == 0) {
+                LatencyHistogram recent = current.getCount() >= MIN_SAMPLES || previous == null ? current : previous;
+                delayNanos = recent.getPercentile(percentile);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.caqy.feign.hedging;
+
+import java.lang.annotation.*;
+
+// marks a method safe to send twice, its slow calls are hedged with a second attempt
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Idempotent {
+}
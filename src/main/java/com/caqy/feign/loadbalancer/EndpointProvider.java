@@ -0,0 +1,9 @@
+package com.caqy.feign.loadbalancer;
+
+import java.util.List;
+
+// supplies the base URLs of a feign client, called for every request so it can follow service discovery
+@FunctionalInterface
+public interface EndpointProvider {
+    List<String> getEndpoints();
+}
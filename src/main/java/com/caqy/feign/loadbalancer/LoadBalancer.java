@@ -0,0 +1,153 @@
+package com.caqy.feign.loadbalancer;
+
+import com.caqy.feign.hedging.HedgeCancelledException;
+import com.caqy.feign.resilience.BulkheadFullException;
+import com.caqy.feign.resilience.CircuitBreakerOpenException;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// picks the endpoint of each request with the power of two choices and ejects endpoints that keep failing
+public class LoadBalancer {
+
+    // feign targets this URL, the client replaces it with the chosen endpoint
+    public static final String BASE_URL = "http://load-balanced";
+
+    private static final double EWMA_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final EndpointProvider endpointProvider;
+    private final LoadBalancing loadBalancing;
+    private final int ejectionFailureThreshold;
+    private final long ejectionMillis;
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public LoadBalancer(EndpointProvider endpointProvider, LoadBalancing loadBalancing, int ejectionFailureThreshold, long ejectionMillis) {
+        this.endpointProvider = endpointProvider;
+        this.loadBalancing = loadBalancing;
+        this.ejectionFailureThreshold = ejectionFailureThreshold;
+        this.ejectionMillis = ejectionMillis;
+    }
+
+    public Client client(Client delegate) {
+        return (request, options) -> {
+            if (!request.url().startsWith(BASE_URL))
+                return delegate.execute(request, options);
+            // endpoints with an open circuit or a full bulkhead refuse the call before sending it, the next one is tried right away
+            List<Endpoint> refused = null;
+            IOException refusal = null;
+            Endpoint endpoint;
+            while ((endpoint = choose(refused)) != null) {
+                Request balanced = Request.create(request.httpMethod(), endpoint.url + request.url().substring(BASE_URL.length()),
+                        request.headers(), request.requestBody());
+                endpoint.outstanding.incrementAndGet();
+                long start = System.nanoTime();
+                Response response;
+                try {
+                    response = delegate.execute(balanced, options);
+                } catch (CircuitBreakerOpenException | BulkheadFullException e) {
+                    if (refused == null)
+                        refused = new ArrayList<>(2);
+                    refused.add(endpoint);
+                    refusal = e;
+                    continue;
+                } catch (HedgeCancelledException e) {
+                    throw e;
+                } catch (RuntimeException | IOException e) {
+                    endpoint.onFailure(System.nanoTime() - start);
+                    throw e;
+                } finally {
+                    endpoint.outstanding.decrementAndGet();
+                }
+                if (response.status() >= 500)
+                    endpoint.onFailure(System.nanoTime() - start);
+                else
+                    endpoint.onSuccess(System.nanoTime() - start);
+                return response;
+            }
+            throw refusal;
+        };
+    }
+
+    // null once every endpoint refused the call
+    private Endpoint choose(List<Endpoint> refused) {
+        List<String> urls = endpointProvider.getEndpoints();
+        if (urls == null || urls.isEmpty())
+            throw new IllegalStateException("No endpoint available");
+        long now = System.currentTimeMillis();
+        List<Endpoint> candidates = new ArrayList<>(urls.size());
+        List<Endpoint> healthy = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            Endpoint endpoint = endpoints.computeIfAbsent(url, Endpoint::new);
+            if (refused != null && refused.contains(endpoint))
+                continue;
+            candidates.add(endpoint);
+            if (endpoint.ejectedUntil <= now)
+                healthy.add(endpoint);
+        }
+        if (candidates.isEmpty())
+            return null;
+        // with every endpoint ejected the ejections are ignored rather than failing all requests
+        if (healthy.isEmpty())
+            healthy = candidates;
+        if (healthy.size() == 1)
+            return healthy.get(0);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(healthy.size());
+        int second = random.nextInt(healthy.size() - 1);
+        if (second >= first)
+            second++;
+        Endpoint a = healthy.get(first);
+        Endpoint b = healthy.get(second);
+        return cost(a) <= cost(b) ? a : b;
+    }
+
+    private double cost(Endpoint endpoint) {
+        int outstanding = endpoint.outstanding.get();
+        if (loadBalancing == LoadBalancing.EWMA)
+            return endpoint.ewmaNanos * (outstanding + 1);
+        return outstanding;
+    }
+
+    private class Endpoint {
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long ejectedUntil;
+        private volatile double ewmaNanos;
+        private long updatedAt = System.nanoTime();
+
+        Endpoint(String url) {
+            this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        }
+
+        synchronized void observe(long latencyNanos) {
+            long now = System.nanoTime();
+            double weight = Math.exp(-(now - updatedAt) / EWMA_DECAY_NANOS);
+            ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+            updatedAt = now;
+        }
+
+        void onSuccess(long latencyNanos) {
+            failures.set(0);
+            observe(latencyNanos);
+        }
+
+        void onFailure(long latencyNanos) {
+            observe(latencyNanos);
+            if (ejectionFailureThreshold > 0 && failures.incrementAndGet() >= ejectionFailureThreshold) {
+                failures.set(0);
+                ejectedUntil = System.currentTimeMillis() + ejectionMillis;
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.caqy.feign.loadbalancer;
+
+public enum LoadBalancing {
+    // the endpoint with fewer requests in flight
+    LEAST_OUTSTANDING,
+    // the endpoint with the lower decaying average latency, weighted by its requests in flight
+    EWMA
+}
@@ -0,0 +1,87 @@
+package com.caqy.feign.logging;
+
+import com.caqy.feign.InvocationContext;
+import com.caqy.feign.Utils;
+import feign.Logger;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import feign.slf4j.Slf4jLogger;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+// must be installed with Logger.Level.FULL on the builder, the level of every call is decided here
+public class SamplingLogger extends Slf4jLogger {
+
+    private static final int MAX_LOGGED_BODY_BYTES = 64 * 1024;
+
+    private final Logger.Level level;
+    private final double sampleRate;
+    private final long slowCallThresholdMillis;
+
+    // the request and its response are logged on the same thread, so the sampling decision can be carried over
+    private final ThreadLocal<Boolean> sampled = new ThreadLocal<>();
+
+    public SamplingLogger(Logger.Level level, double sampleRate, long slowCallThresholdMillis) {
+        this.level = level;
+        this.sampleRate = sampleRate;
+        this.slowCallThresholdMillis = slowCallThresholdMillis;
+    }
+
+    @Override
+    protected void logRequest(String configKey, Logger.Level logLevel, Request request) {
+        boolean sample = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        sampled.set(sample);
+        // a request body is printed only if the call is sampled, errors and slow calls are known after the response
+        Logger.Level requestLevel = sample ? Logger.Level.FULL : level;
+        if (requestLevel != Logger.Level.NONE)
+            super.logRequest(configKey, requestLevel, request);
+    }
+
+    @Override
+    protected Response logAndRebufferResponse(String configKey, Logger.Level logLevel, Response response, long elapsedTime) throws IOException {
+        boolean full = Boolean.TRUE.equals(sampled.get())
+                || response.status() >= 400
+                || (slowCallThresholdMillis > 0 && elapsedTime >= slowCallThresholdMillis);
+        sampled.remove();
+        // only FULL reads and rebuffers the body, so a response that isn't printed keeps its stream
+        Logger.Level responseLevel = full ? (isBodyLoggable(response) ? Logger.Level.FULL : Logger.Level.HEADERS) : level;
+        if (responseLevel == Logger.Level.NONE)
+            return response;
+        return super.logAndRebufferResponse(configKey, responseLevel, response, elapsedTime);
+    }
+
+    // FULL reads the whole body into memory, which streamed results and large or unsized bodies must not be
+    private static boolean isBodyLoggable(Response response) {
+        if (response.body() == null)
+            return true;
+        Integer length = response.body().length();
+        if (length == null || length > MAX_LOGGED_BODY_BYTES)
+            return false;
+        Method method = InvocationContext.currentMethod();
+        if (method == null)
+            return true;
+        Type type = method.getGenericReturnType();
+        if (type instanceof ParameterizedType && CompletableFuture.class.equals(((ParameterizedType) type).getRawType()))
+            type = Util.resolveLastTypeParameter(type, CompletableFuture.class);
+        return !Utils.isStreamingResultType(type) && !Path.class.equals(type);
+    }
+
+    @Override
+    protected void logRetry(String configKey, Logger.Level logLevel) {
+        if (level != Logger.Level.NONE)
+            super.logRetry(configKey, level);
+    }
+
+    @Override
+    protected IOException logIOException(String configKey, Logger.Level logLevel, IOException ioe, long elapsedTime) {
+        sampled.remove();
+        return super.logIOException(configKey, Logger.Level.FULL, ioe, elapsedTime);
+    }
+}
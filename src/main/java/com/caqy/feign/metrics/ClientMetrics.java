@@ -0,0 +1,81 @@
+package com.caqy.feign.metrics;
+
+import com.caqy.feign.MethodHandlerDecorator;
+import feign.Client;
+import feign.Feign;
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.Response;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+// records per-method latency, response status classes and retries of one feign client
+public class ClientMetrics implements MethodHandlerDecorator {
+
+    private final MetricsRegistry registry;
+    private final Class<?> feignClientInterface;
+    private final MetricsRegistry.Counter[] statusCounters = new MetricsRegistry.Counter[6];
+    private final MetricsRegistry.Counter errors;
+    private final MetricsRegistry.Counter retries;
+    // number of attempts of the call running on this thread, feign retries on the invoking thread
+    private final ThreadLocal<int[]> attempts = ThreadLocal.withInitial(() -> new int[1]);
+
+    public ClientMetrics(MetricsRegistry registry, Class<?> feignClientInterface) {
+        this.registry = registry;
+        this.feignClientInterface = feignClientInterface;
+        String prefix = metricsPrefix(feignClientInterface);
+        for (int i = 1; i < statusCounters.length; i++)
+            statusCounters[i] = registry.counter(prefix + ".status." + i + "xx");
+        errors = registry.counter(prefix + ".errors");
+        retries = registry.counter(prefix + ".retries");
+    }
+
+    // the qualified name, so clients with the same simple name in different packages don't share metrics
+    public static String metricsPrefix(Class<?> feignClientInterface) {
+        return "client." + feignClientInterface.getName();
+    }
+
+    public void registerPoolGauges(okhttp3.OkHttpClient okHttpClient) {
+        String prefix = metricsPrefix(feignClientInterface);
+        registry.gauge(prefix + ".pool.connections", () -> okHttpClient.connectionPool().connectionCount());
+        registry.gauge(prefix + ".pool.idle", () -> okHttpClient.connectionPool().idleConnectionCount());
+        registry.gauge(prefix + ".dispatcher.running", () -> okHttpClient.dispatcher().runningCallsCount());
+        registry.gauge(prefix + ".dispatcher.queued", () -> okHttpClient.dispatcher().queuedCallsCount());
+    }
+
+    @Override
+    public MethodHandler decorate(Method method, MethodHandler methodHandler) {
+        String configKey = Feign.configKey(feignClientInterface, method);
+        MetricsRegistry.Timer timer = registry.timer(metricsPrefix(feignClientInterface) + configKey.substring(configKey.indexOf('#')));
+        return args -> {
+            int[] attempt = attempts.get();
+            int outerAttempt = attempt[0];
+            attempt[0] = 0;
+            long start = System.nanoTime();
+            try {
+                return methodHandler.invoke(args);
+            } finally {
+                timer.record(System.nanoTime() - start);
+                attempt[0] = outerAttempt;
+            }
+        };
+    }
+
+    public Client client(Client delegate) {
+        return (request, options) -> {
+            if (++attempts.get()[0] > 1)
+                retries.increment();
+            Response response;
+            try {
+                response = delegate.execute(request, options);
+            } catch (RuntimeException | IOException e) {
+                errors.increment();
+                throw e;
+            }
+            int statusClass = response.status() / 100;
+            if (statusClass > 0 && statusClass < statusCounters.length)
+                statusCounters[statusClass].increment();
+            return response;
+        };
+    }
+}
@@ -0,0 +1,154 @@
+package com.caqy.feign.metrics;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// keeps metrics in memory and publishes them as attributes of one MBean
+public class DefaultMetricsRegistry implements MetricsRegistry, DynamicMBean, InitializingBean, DisposableBean {
+
+    private final ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdderCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private String objectName = "com.caqy.feign:type=Metrics";
+    private ObjectName registeredName;
+
+    public void setObjectName(String objectName) {
+        this.objectName = objectName;
+    }
+
+    @Override
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    @Override
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdderCounter());
+    }
+
+    @Override
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public Map<String, LatencyHistogram> getTimers() {
+        return timers;
+    }
+
+    public long getCount(String counterName) {
+        LongAdderCounter counter = counters.get(counterName);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            ObjectName name = new ObjectName(objectName);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                LoggerFactory.getLogger(getClass()).warn("MBean {} is already registered, feign metrics are not exposed through JMX", objectName);
+                return;
+            }
+            server.registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            LoggerFactory.getLogger(getClass()).warn("Fail to register feign metrics MBean", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws JMException {
+        if (registeredName != null)
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+    }
+
+    // timers are exposed as <name>.count, .mean, .p50, .p90, .p99 and .max, durations in milliseconds
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (counters.containsKey(attribute))
+            return counters.get(attribute).sum();
+        if (gauges.containsKey(attribute))
+            return gauges.get(attribute).getAsLong();
+        int index = attribute.lastIndexOf('.');
+        LatencyHistogram timer = index < 0 ? null : timers.get(attribute.substring(0, index));
+        if (timer != null) {
+            switch (attribute.substring(index + 1)) {
+                case "count":
+                    return timer.getCount();
+                case "mean":
+                    return toMillis(timer.getMean());
+                case "p50":
+                    return toMillis(timer.getPercentile(50));
+                case "p90":
+                    return toMillis(timer.getPercentile(90));
+                case "p99":
+                    return toMillis(timer.getPercentile(99));
+                case "max":
+                    return toMillis(timer.getMax());
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException ignored) {
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : counters.keySet())
+            attributes.add(new MBeanAttributeInfo(name, "long", "counter", true, false, false));
+        for (String name : gauges.keySet())
+            attributes.add(new MBeanAttributeInfo(name, "long", "gauge", true, false, false));
+        for (String name : timers.keySet()) {
+            attributes.add(new MBeanAttributeInfo(name + ".count", "long", "timer count", true, false, false));
+            for (String statistic : new String[]{"mean", "p50", "p90", "p99", "max"})
+                attributes.add(new MBeanAttributeInfo(name + "." + statistic, "double", "timer " + statistic + " in milliseconds", true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "feign client metrics", attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    private static final class LongAdderCounter extends LongAdder implements Counter {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,21 @@
+package com.caqy.feign.metrics;
+
+import java.util.function.LongSupplier;
+
+// metrics are resolved once when a client is built, so recording on the hot path is a plain call on the handle
+public interface MetricsRegistry {
+
+    Timer timer(String name);
+
+    Counter counter(String name);
+
+    void gauge(String name, LongSupplier value);
+
+    interface Timer {
+        void record(long nanos);
+    }
+
+    interface Counter {
+        void increment();
+    }
+}
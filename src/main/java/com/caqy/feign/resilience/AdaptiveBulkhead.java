@@ -0,0 +1,180 @@
+package com.caqy.feign.resilience;
+
+import com.caqy.feign.hedging.HedgeCancelledException;
+import com.caqy.feign.metrics.ClientMetrics;
+import com.caqy.feign.metrics.MetricsRegistry;
+import feign.Client;
+import feign.Response;
+import okhttp3.HttpUrl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// limits the calls in flight to each host, the limit grows additively while latency holds
+// and shrinks multiplicatively on failures or when recent latency drifts above the long term average
+public class AdaptiveBulkhead {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    private final String metricsPrefix;
+    private final MetricsRegistry metricsRegistry;
+    private final MetricsRegistry.Counter rejections;
+    private final int initialLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final ConcurrentMap<String, HostBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public AdaptiveBulkhead(Class<?> feignClientInterface, MetricsRegistry metricsRegistry, int initialLimit, int maxLimit, int maxQueue, long maxWaitMillis) {
+        this.metricsPrefix = ClientMetrics.metricsPrefix(feignClientInterface) + ".bulkhead";
+        this.metricsRegistry = metricsRegistry;
+        this.rejections = metricsRegistry == null ? null : metricsRegistry.counter(metricsPrefix + ".rejected");
+        this.initialLimit = initialLimit;
+        this.maxLimit = Math.max(initialLimit, maxLimit);
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    public Client client(Client delegate) {
+        return (request, options) -> {
+            HttpUrl url = HttpUrl.parse(request.url());
+            String host = url == null ? request.url() : url.host() + ":" + url.port();
+            HostBulkhead bulkhead = bulkheads.computeIfAbsent(host, this::newBulkhead);
+            if (!bulkhead.acquire()) {
+                if (rejections != null)
+                    rejections.increment();
+                throw new BulkheadFullException(host);
+            }
+            long start = System.nanoTime();
+            Response response;
+            try {
+                response = delegate.execute(request, options);
+            } catch (HedgeCancelledException e) {
+                // says nothing about the host, the other attempt was just faster
+                bulkhead.release();
+                throw e;
+            } catch (RuntimeException | IOException e) {
+                bulkhead.release(System.nanoTime() - start, true);
+                throw e;
+            }
+            bulkhead.release(System.nanoTime() - start, response.status() >= 500 || response.status() == 429);
+            return response;
+        };
+    }
+
+    private HostBulkhead newBulkhead(String host) {
+        HostBulkhead bulkhead = new HostBulkhead();
+        if (metricsRegistry != null) {
+            String prefix = metricsPrefix + "." + host;
+            metricsRegistry.gauge(prefix + ".limit", bulkhead::getLimit);
+            metricsRegistry.gauge(prefix + ".inflight", bulkhead::getInflight);
+            metricsRegistry.gauge(prefix + ".queued", bulkhead::getQueued);
+        }
+        return bulkhead;
+    }
+
+    private class HostBulkhead {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition released = lock.newCondition();
+        private double limit = initialLimit;
+        private int inflight;
+        private int queued;
+        private double shortRttNanos;
+        private double longRttNanos;
+        // samples since the last decrease, latency only lowers the limit again after a full window
+        private int samplesSinceDecrease;
+
+        boolean acquire() throws InterruptedIOException {
+            lock.lock();
+            try {
+                if (inflight < (int) limit) {
+                    inflight++;
+                    return true;
+                }
+                if (queued >= maxQueue || maxWaitNanos <= 0)
+                    return false;
+                queued++;
+                try {
+                    long remaining = maxWaitNanos;
+                    while (inflight >= (int) limit) {
+                        if (remaining <= 0)
+                            return false;
+                        remaining = released.awaitNanos(remaining);
+                    }
+                    inflight++;
+                    return true;
+                } finally {
+                    queued--;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the bulkhead");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release() {
+            lock.lock();
+            try {
+                inflight--;
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(long rttNanos, boolean dropped) {
+            lock.lock();
+            try {
+                int used = inflight--;
+                shortRttNanos = shortRttNanos == 0 ? rttNanos : shortRttNanos * 0.9 + rttNanos * 0.1;
+                longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos * 0.995 + rttNanos * 0.005;
+                samplesSinceDecrease++;
+                if (dropped || (shortRttNanos > longRttNanos * LATENCY_TOLERANCE && samplesSinceDecrease >= limit)) {
+                    limit = Math.max(1, limit * BACKOFF_RATIO);
+                    samplesSinceDecrease = 0;
+                } else if (used * 2 >= limit) {
+                    // grows by about one per limit calls, and only while the limit is actually used
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long getLimit() {
+            lock.lock();
+            try {
+                return (long) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long getInflight() {
+            lock.lock();
+            try {
+                return inflight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long getQueued() {
+            lock.lock();
+            try {
+                return queued;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
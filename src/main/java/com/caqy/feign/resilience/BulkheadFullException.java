@@ -0,0 +1,13 @@
+package com.caqy.feign.resilience;
+
+import java.io.IOException;
+
+// thrown by the client when a host has no free slot within the wait time, never retried
+public class BulkheadFullException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BulkheadFullException(String host) {
+        super("Bulkhead is full for " + host);
+    }
+}
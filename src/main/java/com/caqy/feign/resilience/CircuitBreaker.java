@@ -0,0 +1,50 @@
+package com.caqy.feign.resilience;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// opens after consecutive failures, then lets a single probe through once the open period is over
+class CircuitBreaker {
+
+    static final int REJECTED = 0;
+    static final int PERMITTED = 1;
+    // the single call let through a circuit whose open period is over
+    static final int PROBE = 2;
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    // 0 while the circuit is closed
+    private volatile long openedAt;
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    int acquire() {
+        long opened = openedAt;
+        if (opened == 0)
+            return PERMITTED;
+        if (System.currentTimeMillis() - opened < openMillis)
+            return REJECTED;
+        return probing.compareAndSet(false, true) ? PROBE : REJECTED;
+    }
+
+    void onSuccess() {
+        failures.set(0);
+        openedAt = 0;
+        probing.set(false);
+    }
+
+    // the probe never reached the host, the next call probes instead
+    void releaseProbe() {
+        probing.set(false);
+    }
+
+    void onFailure() {
+        if (probing.compareAndSet(true, false) || failures.incrementAndGet() >= failureThreshold)
+            openedAt = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,13 @@
+package com.caqy.feign.resilience;
+
+import java.io.IOException;
+
+// thrown by the client instead of calling a host whose circuit is open, never retried
+public class CircuitBreakerOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitBreakerOpenException(String host) {
+        super("Circuit breaker is open for " + host);
+    }
+}
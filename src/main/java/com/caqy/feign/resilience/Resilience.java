@@ -0,0 +1,141 @@
+package com.caqy.feign.resilience;
+
+import com.caqy.feign.hedging.HedgeCancelledException;
+import com.caqy.feign.streaming.StreamingBodies;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.RetryableException;
+import feign.Retryer;
+import okhttp3.HttpUrl;
+import okhttp3.internal.http.UnrepeatableRequestBody;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// retries with exponential backoff and jitter within a per-endpoint retry budget, and breaks the circuit of failing endpoints
+public class Resilience {
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final double retryBudgetPerSecond;
+    private final int circuitBreakerFailureThreshold;
+    private final long circuitBreakerOpenMillis;
+
+    private final ConcurrentMap<String, RetryBudget> retryBudgets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    // host and port of the last attempt of the call running on this thread, feign retries on the invoking thread.
+    // The retryer reads it after client() returned, so the retryer clears it instead: when feign clones it at the
+    // start of every call, and whenever it reads it
+    private final ThreadLocal<String> currentHost = new ThreadLocal<>();
+
+    public Resilience(int maxAttempts, long backoffMillis, long maxBackoffMillis, double retryBudgetPerSecond,
+                      int circuitBreakerFailureThreshold, long circuitBreakerOpenMillis) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.retryBudgetPerSecond = retryBudgetPerSecond;
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+    }
+
+    public Retryer retryer() {
+        return new BackoffRetryer();
+    }
+
+    public Client client(Client delegate) {
+        return (request, options) -> {
+            String host = host(request);
+            currentHost.set(host);
+            if (circuitBreakerFailureThreshold <= 0)
+                return delegate.execute(request, options);
+            CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(host, key -> new CircuitBreaker(circuitBreakerFailureThreshold, circuitBreakerOpenMillis));
+            int permit = circuitBreaker.acquire();
+            if (permit == CircuitBreaker.REJECTED)
+                throw new CircuitBreakerOpenException(host);
+            Response response;
+            try {
+                response = delegate.execute(request, options);
+            } catch (BulkheadFullException | HedgeCancelledException e) {
+                // the call never left this client, or was dropped for the faster hedge, so it gives no verdict
+                if (permit == CircuitBreaker.PROBE)
+                    circuitBreaker.releaseProbe();
+                throw e;
+            } catch (RuntimeException | IOException e) {
+                circuitBreaker.onFailure();
+                throw e;
+            }
+            if (response.status() >= 500 || response.status() == 429)
+                circuitBreaker.onFailure();
+            else
+                circuitBreaker.onSuccess();
+            return response;
+        };
+    }
+
+    private static String host(Request request) {
+        HttpUrl url = HttpUrl.parse(request.url());
+        return url == null ? request.url() : url.host() + ":" + url.port();
+    }
+
+    private boolean isRetryable(RetryableException e) {
+        if (e.getCause() instanceof CircuitBreakerOpenException || e.getCause() instanceof BulkheadFullException)
+            return false;
+        // an InputStream body is gone once sent
+        if (StreamingBodies.currentBody() instanceof UnrepeatableRequestBody)
+            return false;
+        // a non idempotent request is retried only if it never reached the server or the server asked for it
+        if (e.method() == Request.HttpMethod.POST || e.method() == Request.HttpMethod.PATCH)
+            return e.retryAfter() != null || e.getCause() instanceof ConnectException;
+        return true;
+    }
+
+    private class BackoffRetryer implements Retryer {
+
+        private int attempt = 1;
+
+        @Override
+        public void continueOrPropagate(RetryableException e) {
+            String host = currentHost.get();
+            currentHost.remove();
+            if (attempt++ >= maxAttempts || !isRetryable(e))
+                throw e;
+
+            long interval;
+            if (e.retryAfter() != null) {
+                interval = e.retryAfter().getTime() - System.currentTimeMillis();
+                // rather fail than park the calling thread longer than any backoff would
+                if (interval > maxBackoffMillis)
+                    throw e;
+            } else {
+                // full jitter spreads the retries of callers that failed together
+                long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 2, 30));
+                interval = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            }
+
+            if (host != null && retryBudgetPerSecond > 0
+                    && !retryBudgets.computeIfAbsent(host, key -> new RetryBudget(retryBudgetPerSecond)).tryAcquire())
+                throw e;
+
+            if (interval > 0) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public Retryer clone() {
+            // a failure before this call reaches client() must not be charged to the host of an earlier call
+            currentHost.remove();
+            return new BackoffRetryer();
+        }
+    }
+}
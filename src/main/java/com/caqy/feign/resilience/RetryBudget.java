@@ -0,0 +1,26 @@
+package com.caqy.feign.resilience;
+
+// token bucket refilled at a fixed rate, each retry takes one token
+class RetryBudget {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    RetryBudget(double retriesPerSecond) {
+        this.tokensPerNano = retriesPerSecond / 1_000_000_000d;
+        this.capacity = Math.max(1, retriesPerSecond);
+        this.tokens = capacity;
+    }
+
+    synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens < 1)
+            return false;
+        tokens--;
+        return true;
+    }
+}
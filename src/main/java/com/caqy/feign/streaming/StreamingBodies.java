@@ -0,0 +1,231 @@
+package com.caqy.feign.streaming;
+
+import com.caqy.feign.MethodHandlerDecorator;
+import com.caqy.feign.Utils;
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.Response;
+import feign.codec.Decoder;
+import feign.codec.Encoder;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okhttp3.internal.http.UnrepeatableRequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// sends InputStream, Path, File and ByteBuffer bodies and multipart parts to the socket without buffering them,
+// and streams responses into Path, InputStream and ReadableByteChannel results
+public class StreamingBodies implements MethodHandlerDecorator {
+
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    // the body encoded for the call running on this thread, kept for every retry of the call
+    private static final ThreadLocal<RequestBody> currentBody = new ThreadLocal<>();
+
+    public static RequestBody currentBody() {
+        return currentBody.get();
+    }
+
+    public static boolean isStreamable(Object value) {
+        return value instanceof InputStream || value instanceof Path || value instanceof File || value instanceof ByteBuffer;
+    }
+
+    @Override
+    public MethodHandler decorate(Method method, MethodHandler methodHandler) {
+        if (method.getParameterCount() == 0)
+            return methodHandler;
+        return args -> {
+            try {
+                return methodHandler.invoke(args);
+            } finally {
+                currentBody.remove();
+            }
+        };
+    }
+
+    public Encoder encoder(Encoder delegate) {
+        return (object, bodyType, template) -> {
+            String contentType = Utils.getContentType(template.headers());
+            MediaType mediaType = Utils.parseMediaType(contentType);
+            RequestBody body;
+            boolean multipart = false;
+            if (isStreamable(object)) {
+                body = requestBody(object, mediaType != null ? mediaType : OCTET_STREAM);
+            } else if (object instanceof Map && mediaType != null && "form-data".equals(mediaType.subtype()) && hasStreamableValue((Map<?, ?>) object)) {
+                body = multipartBody((Map<?, ?>) object);
+                multipart = true;
+                // the boundary is part of the Content-Type
+                template.header("Content-Type");
+            } else {
+                delegate.encode(object, bodyType, template);
+                return;
+            }
+            if (object instanceof InputStream || multipart && ((Map<?, ?>) object).values().stream().anyMatch(InputStream.class::isInstance))
+                body = new OneShotBody(body);
+            currentBody.set(body);
+            if (contentType == null || multipart)
+                template.header("Content-Type", String.valueOf(body.contentType()));
+        };
+    }
+
+    private static boolean hasStreamableValue(Map<?, ?> form) {
+        for (Object value : form.values()) {
+            if (isStreamable(value))
+                return true;
+        }
+        return false;
+    }
+
+    private static MultipartBody multipartBody(Map<?, ?> form) {
+        MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+        for (Map.Entry<?, ?> entry : form.entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            Object value = entry.getValue();
+            if (value == null)
+                continue;
+            if (isStreamable(value))
+                builder.addFormDataPart(name, fileName(name, value), requestBody(value, OCTET_STREAM));
+            else if (value instanceof byte[])
+                builder.addFormDataPart(name, name, RequestBody.create(OCTET_STREAM, (byte[]) value));
+            else
+                builder.addFormDataPart(name, String.valueOf(value));
+        }
+        return builder.build();
+    }
+
+    private static String fileName(String name, Object value) {
+        if (value instanceof Path)
+            return String.valueOf(((Path) value).getFileName());
+        if (value instanceof File)
+            return ((File) value).getName();
+        return name;
+    }
+
+    private static RequestBody requestBody(Object value, MediaType mediaType) {
+        if (value instanceof File)
+            value = ((File) value).toPath();
+        if (value instanceof Path) {
+            Path path = (Path) value;
+            return new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return mediaType;
+                }
+
+                @Override
+                public long contentLength() throws IOException {
+                    return Files.size(path);
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    try (Source source = Okio.source(path)) {
+                        sink.writeAll(source);
+                    }
+                }
+            };
+        }
+        if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) value;
+            return new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return mediaType;
+                }
+
+                @Override
+                public long contentLength() {
+                    return buffer.remaining();
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    // a duplicate, so a retry writes the whole buffer again
+                    ByteBuffer source = buffer.duplicate();
+                    while (source.hasRemaining())
+                        sink.write(source);
+                }
+            };
+        }
+        InputStream inputStream = (InputStream) value;
+        // sent chunked
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                sink.writeAll(Okio.source(inputStream));
+            }
+        };
+    }
+
+    // a second write would send what is left of the InputStream as if it were the whole body, so it fails instead,
+    // and the marker keeps OkHttp and the retryer from trying
+    private static class OneShotBody extends RequestBody implements UnrepeatableRequestBody {
+        private final RequestBody delegate;
+        private final AtomicBoolean written = new AtomicBoolean();
+
+        OneShotBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            if (!written.compareAndSet(false, true))
+                throw new IOException("The InputStream body was already sent and can't be sent again");
+            delegate.writeTo(sink);
+        }
+    }
+
+    public Decoder decoder(Decoder delegate) {
+        return (response, type) -> {
+            if (Path.class.equals(type))
+                return toFile(response);
+            if (InputStream.class.equals(type))
+                return response.body() == null ? null : response.body().asInputStream();
+            if (ReadableByteChannel.class.equals(type))
+                return response.body() == null ? null : Channels.newChannel(response.body().asInputStream());
+            return delegate.decode(response, type);
+        };
+    }
+
+    private static Path toFile(Response response) throws IOException {
+        if (response.status() == 404 || response.body() == null)
+            return null;
+        Path path = Files.createTempFile("feign-", ".download");
+        try (Source source = Okio.source(response.body().asInputStream());
+             BufferedSink sink = Okio.buffer(Okio.sink(path))) {
+            sink.writeAll(source);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,149 @@
+package com.caqy.feign.streaming;
+
+import com.caqy.feign.hedging.HedgeCancelledException;
+import com.caqy.feign.hedging.Hedging;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// feign's OkHttpClient, except that the body encoded by StreamingBodies replaces the byte array of the request
+public class StreamingOkHttpClient implements Client {
+
+    private final OkHttpClient delegate;
+    private final SynchronousCallLimiter limiter;
+
+    public StreamingOkHttpClient(OkHttpClient delegate) {
+        this.delegate = delegate;
+        this.limiter = SynchronousCallLimiter.of(delegate.dispatcher());
+    }
+
+    // makes the synchronous calls of the clients using this dispatcher wait for its maxRequests and maxRequestsPerHost
+    public static void limitSynchronousCalls(Dispatcher dispatcher) {
+        SynchronousCallLimiter.limit(dispatcher);
+    }
+
+    public static boolean isLimitingSynchronousCalls(Dispatcher dispatcher) {
+        return SynchronousCallLimiter.of(dispatcher) != null;
+    }
+
+    @Override
+    public Response execute(Request input, Request.Options options) throws IOException {
+        OkHttpClient requestScoped = delegate;
+        if (delegate.connectTimeoutMillis() != options.connectTimeoutMillis() || delegate.readTimeoutMillis() != options.readTimeoutMillis()) {
+            requestScoped = delegate.newBuilder()
+                    .connectTimeout(options.connectTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .readTimeout(options.readTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .build();
+        }
+        okhttp3.Request request = toOkHttpRequest(input, StreamingBodies.currentBody());
+        Call call = requestScoped.newCall(request);
+        if (limiter == null) {
+            Hedging.register(call);
+            return toFeignResponse(execute(call), input);
+        }
+        Hedging.register(limiter.cancellable(call));
+        String host = request.url().host();
+        // the wait for a slot counts against the call timeout, or the connect timeout without one
+        long callTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(requestScoped.callTimeoutMillis());
+        long waitNanos = callTimeoutNanos > 0 ? callTimeoutNanos : TimeUnit.MILLISECONDS.toNanos(options.connectTimeoutMillis());
+        long start = System.nanoTime();
+        try {
+            limiter.acquire(host, delegate.dispatcher(), call, waitNanos);
+        } catch (IOException e) {
+            if (call.isCanceled())
+                throw new HedgeCancelledException(e);
+            throw e;
+        }
+        try {
+            if (callTimeoutNanos > 0)
+                call.timeout().timeout(Math.max(1, callTimeoutNanos - (System.nanoTime() - start)), TimeUnit.NANOSECONDS);
+            return toFeignResponse(execute(call), input);
+        } finally {
+            limiter.release(host);
+        }
+    }
+
+    private static okhttp3.Response execute(Call call) throws IOException {
+        try {
+            return call.execute();
+        } catch (IOException e) {
+            if (call.isCanceled())
+                throw new HedgeCancelledException(e);
+            throw e;
+        }
+    }
+
+    static okhttp3.Request toOkHttpRequest(Request input, RequestBody streamingBody) {
+        okhttp3.Request.Builder builder = new okhttp3.Request.Builder().url(input.url());
+        MediaType mediaType = null;
+        boolean hasAcceptHeader = false;
+        for (Map.Entry<String, Collection<String>> header : input.headers().entrySet()) {
+            String field = header.getKey();
+            // OkHttp computes the length of the body it sends
+            if (field.equalsIgnoreCase("Content-Length"))
+                continue;
+            if (field.equalsIgnoreCase("Accept"))
+                hasAcceptHeader = true;
+            for (String value : header.getValue()) {
+                builder.addHeader(field, value);
+                if (field.equalsIgnoreCase("Content-Type"))
+                    mediaType = MediaType.parse(value);
+            }
+        }
+        if (!hasAcceptHeader)
+            builder.addHeader("Accept", "*/*");
+
+        RequestBody body = streamingBody;
+        if (body == null) {
+            byte[] inputBody = input.requestBody().asBytes();
+            boolean isMethodWithBody = input.httpMethod() == Request.HttpMethod.POST
+                    || input.httpMethod() == Request.HttpMethod.PUT
+                    || input.httpMethod() == Request.HttpMethod.PATCH;
+            if (isMethodWithBody && inputBody == null)
+                inputBody = new byte[0];
+            if (inputBody != null)
+                body = RequestBody.create(mediaType, inputBody);
+        }
+        if (body != null)
+            builder.removeHeader("Content-Type");
+        return builder.method(input.httpMethod().name(), body).build();
+    }
+
+    static Response toFeignResponse(okhttp3.Response response, Request request) {
+        Response.Builder builder = Response.builder()
+                .status(response.code())
+                .reason(response.message())
+                .request(request)
+                .headers(toMap(response.headers()));
+        ResponseBody body = response.body();
+        if (body == null || body.contentLength() == 0) {
+            if (body != null)
+                body.close();
+            return builder.build();
+        }
+        // the body stays a stream, so large downloads are never held in memory
+        long length = body.contentLength();
+        return builder.body(body.byteStream(), length >= 0 && length <= Integer.MAX_VALUE ? (int) length : null).build();
+    }
+
+    private static Map<String, Collection<String>> toMap(Headers headers) {
+        Map<String, Collection<String>> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0, size = headers.size(); i < size; i++)
+            result.computeIfAbsent(headers.name(i), name -> new ArrayList<>(1)).add(headers.value(i));
+        return result;
+    }
+}
@@ -0,0 +1,134 @@
+package com.caqy.feign.streaming;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Timeout;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// OkHttp's dispatcher only limits enqueued calls, so the synchronous calls of feign wait here for its maxRequests
+// and maxRequestsPerHost, counted over every client sharing the dispatcher. Only the dispatchers registered
+// with limit() are enforced, others keep OkHttp's behaviour of not limiting synchronous calls
+class SynchronousCallLimiter {
+
+    private static final Map<Dispatcher, SynchronousCallLimiter> limiters = Collections.synchronizedMap(new WeakHashMap<>());
+
+    static void limit(Dispatcher dispatcher) {
+        limiters.computeIfAbsent(dispatcher, key -> new SynchronousCallLimiter());
+    }
+
+    // null when the dispatcher is not limited
+    static SynchronousCallLimiter of(Dispatcher dispatcher) {
+        return limiters.get(dispatcher);
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private int running;
+
+    // the limits are read on every call, as the dispatcher allows to change them at any time.
+    // Waits at most timeoutNanos, 0 for no limit, and gives up as soon as the call is cancelled
+    void acquire(String host, Dispatcher dispatcher, Call call, long timeoutNanos) throws IOException {
+        lock.lock();
+        try {
+            long remaining = timeoutNanos;
+            while (running >= dispatcher.getMaxRequests() || runningPerHost.getOrDefault(host, 0) >= dispatcher.getMaxRequestsPerHost()) {
+                if (call.isCanceled())
+                    throw new IOException("Canceled");
+                if (timeoutNanos <= 0) {
+                    released.await();
+                } else {
+                    if (remaining <= 0)
+                        throw new InterruptedIOException("Timed out waiting for the dispatcher limits");
+                    remaining = released.awaitNanos(remaining);
+                }
+            }
+            running++;
+            runningPerHost.merge(host, 1, Integer::sum);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the dispatcher limits");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(String host) {
+        lock.lock();
+        try {
+            running--;
+            if (runningPerHost.merge(host, -1, Integer::sum) == 0)
+                runningPerHost.remove(host);
+            // waiters for other hosts may be waiting on the global limit as well
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void wakeUp() {
+        lock.lock();
+        try {
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the call handed to whoever may cancel it, so a cancelled call stops waiting for a slot
+    Call cancellable(Call call) {
+        return new Call() {
+            @Override
+            public Request request() {
+                return call.request();
+            }
+
+            @Override
+            public Response execute() throws IOException {
+                return call.execute();
+            }
+
+            @Override
+            public void enqueue(Callback responseCallback) {
+                call.enqueue(responseCallback);
+            }
+
+            @Override
+            public void cancel() {
+                call.cancel();
+                wakeUp();
+            }
+
+            @Override
+            public boolean isExecuted() {
+                return call.isExecuted();
+            }
+
+            @Override
+            public boolean isCanceled() {
+                return call.isCanceled();
+            }
+
+            @Override
+            public Timeout timeout() {
+                return call.timeout();
+            }
+
+            @Override
+            public Call clone() {
+                return call.clone();
+            }
+        };
+    }
+}
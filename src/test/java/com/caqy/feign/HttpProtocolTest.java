@@ -0,0 +1,71 @@
+package com.caqy.feign;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+
+import static org.junit.Assert.*;
+
+public class HttpProtocolTest {
+
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private OkHttpClient client(OkHttpClient.Builder builder, HttpProtocol protocol) {
+        protocol.apply(builder);
+        return builder.build();
+    }
+
+    private int call(OkHttpClient client) throws IOException {
+        Request request = new Request.Builder().url("http://localhost:" + server.getAddress().getPort() + "/").build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.code();
+        }
+    }
+
+    @Test
+    public void http2RefusesToFallBackToHttp11() throws IOException {
+        OkHttpClient client = client(new OkHttpClient.Builder(), HttpProtocol.HTTP_2);
+        try {
+            call(client);
+            fail("expected the HTTP/1.1 connection to be refused");
+        } catch (ProtocolException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("http/1.1"));
+        }
+    }
+
+    @Test
+    public void otherProtocolsDropTheRequirementOfTheSharedClient() throws IOException {
+        OkHttpClient shared = client(new OkHttpClient.Builder(), HttpProtocol.HTTP_2);
+        assertEquals(200, call(client(shared.newBuilder(), HttpProtocol.HTTP_1_1)));
+    }
+
+    @Test
+    public void defaultKeepsTheSharedClient() throws IOException {
+        OkHttpClient shared = client(new OkHttpClient.Builder(), HttpProtocol.HTTP_1_1);
+        assertEquals(200, call(client(shared.newBuilder(), HttpProtocol.DEFAULT)));
+        assertEquals(shared.protocols(), client(shared.newBuilder(), HttpProtocol.DEFAULT).protocols());
+    }
+}
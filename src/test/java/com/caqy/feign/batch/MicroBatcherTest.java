@@ -0,0 +1,95 @@
+package com.caqy.feign.batch;
+
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.RequestLine;
+import feign.RetryableException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MicroBatcherTest {
+
+    interface Api {
+        @Batched(value = "bulk", maxDelayMillis = 1)
+        @RequestLine("GET /users/{id}")
+        String get(String id);
+
+        @RequestLine("POST /users/bulk")
+        List<String> bulk(List<String> ids);
+    }
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    // the bulk call echoes its arguments, once the test releases it
+    private MethodHandler get(long timeoutMillis) throws NoSuchMethodException {
+        MicroBatcher batcher = new MicroBatcher(Api.class, executor, timeoutMillis);
+        Method bulk = Api.class.getMethod("bulk", List.class);
+        batcher.decorate(bulk, args -> {
+            release.await();
+            return new ArrayList<>((List<?>) args[0]);
+        });
+        return batcher.decorate(Api.class.getMethod("get", String.class), args -> {
+            throw new AssertionError("single calls go through the bulk method");
+        });
+    }
+
+    @Test
+    public void callersGetTheirOwnResult() throws Throwable {
+        MethodHandler get = get(5000);
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> invoke(get, "a"), executor);
+        CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> invoke(get, "b"), executor);
+        release.countDown();
+        assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        assertEquals("b", second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void waitIsBoundedByTheTimeout() throws Throwable {
+        MethodHandler get = get(50);
+        long start = System.nanoTime();
+        try {
+            get.invoke(new Object[]{"a"});
+            fail("expected a timeout");
+        } catch (RetryableException e) {
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    @Test
+    public void interruptIsWrappedAndKept() throws Throwable {
+        MethodHandler get = get(0);
+        Thread.currentThread().interrupt();
+        try {
+            get.invoke(new Object[]{"a"});
+            fail("expected the interrupt to end the wait");
+        } catch (RetryableException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    private static Object invoke(MethodHandler handler, String id) {
+        try {
+            return handler.invoke(new Object[]{id});
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
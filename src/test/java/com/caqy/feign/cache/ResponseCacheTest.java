@@ -0,0 +1,133 @@
+package com.caqy.feign.cache;
+
+import com.caqy.feign.InvocationContext;
+import feign.Client;
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.Request;
+import feign.RequestLine;
+import feign.Response;
+import feign.Util;
+import okhttp3.Cache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+
+    interface Api {
+        @RequestLine("GET /users")
+        String users();
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Request> sent = new ArrayList<>();
+
+    // answers with the given headers and a body naming the Authorization of the request
+    private Client server(int status, String... headers) {
+        return (request, options) -> {
+            sent.add(request);
+            Map<String, Collection<String>> responseHeaders = new HashMap<>();
+            for (int i = 0; i < headers.length; i += 2)
+                responseHeaders.put(headers[i], Collections.singletonList(headers[i + 1]));
+            Collection<String> authorization = request.headers().get("Authorization");
+            String body = authorization == null ? "anonymous" : authorization.iterator().next();
+            return Response.builder().status(status).headers(responseHeaders).request(request).body(body, Util.UTF_8).build();
+        };
+    }
+
+    private static String call(Client client, String... headers) throws Throwable {
+        Map<String, Collection<String>> requestHeaders = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2)
+            requestHeaders.put(headers[i], Collections.singletonList(headers[i + 1]));
+        Request request = Request.create(Request.HttpMethod.GET, "http://localhost:8081/users", requestHeaders, null, null);
+        MethodHandler handler = args -> {
+            Response response = client.execute(request, new Request.Options());
+            return response.body() == null ? null : Util.toString(response.body().asReader());
+        };
+        return (String) new InvocationContext().decorate(Api.class.getMethod("users"), handler).invoke(new Object[0]);
+    }
+
+    private static ResponseCache responseCache() {
+        return new ResponseCache(Api.class, 16, Arrays.asList("Authorization", "Cookie", "Accept"));
+    }
+
+    @Test
+    public void freshResponseIsServedFromTheCache() throws Throwable {
+        Client client = responseCache().client(server(200, "Cache-Control", "max-age=60"));
+        assertEquals("alice", call(client, "Authorization", "alice"));
+        assertEquals("alice", call(client, "Authorization", "alice"));
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void responseOfOneUserIsNotServedToAnother() throws Throwable {
+        Client client = responseCache().client(server(200, "Cache-Control", "max-age=60"));
+        assertEquals("alice", call(client, "Authorization", "alice"));
+        assertEquals("bob", call(client, "Authorization", "bob"));
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void varyingRequestHeadersMustMatch() throws Throwable {
+        Client client = responseCache().client(server(200, "Cache-Control", "max-age=60", "Vary", "Accept-Language"));
+        call(client, "Accept-Language", "en");
+        call(client, "Accept-Language", "fr");
+        call(client, "Accept-Language", "fr");
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void varyStarIsNotCached() throws Throwable {
+        Client client = responseCache().client(server(200, "Cache-Control", "max-age=60", "Vary", "*"));
+        call(client);
+        call(client);
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void noStoreIsNotCached() throws Throwable {
+        Client client = responseCache().client(server(200, "Cache-Control", "no-store"));
+        call(client);
+        call(client);
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void staleEntryIsRevalidated() throws Throwable {
+        ResponseCache responseCache = responseCache();
+        Client first = responseCache.client(server(200, "ETag", "\"v1\""));
+        assertEquals("alice", call(first, "Authorization", "alice"));
+
+        Client revalidating = responseCache.client(server(304));
+        assertEquals("alice", call(revalidating, "Authorization", "alice"));
+        assertEquals(2, sent.size());
+        assertEquals(Collections.singletonList("\"v1\""), new ArrayList<>(sent.get(1).headers().get("If-None-Match")));
+    }
+
+    @Test
+    public void clientsWithTheSameDirectoryShareTheDiskCache() throws Exception {
+        File directory = folder.newFolder("http");
+        Cache cache = ResponseCache.openDiskCache(directory.getPath(), 1024 * 1024);
+        Cache same = ResponseCache.openDiskCache(directory.getPath() + "/../http", 1024 * 1024);
+        assertSame(cache, same);
+
+        ResponseCache.closeDiskCache(same);
+        assertFalse(cache.isClosed());
+        ResponseCache.closeDiskCache(cache);
+        assertTrue(cache.isClosed());
+        assertNotSame(cache, ResponseCache.openDiskCache(directory.getPath(), 1024 * 1024));
+    }
+}
@@ -0,0 +1,134 @@
+package com.caqy.feign.coalesce;
+
+import com.caqy.feign.InvocationContext;
+import feign.Client;
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.Request;
+import feign.RequestLine;
+import feign.Response;
+import feign.Util;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+
+    interface Api {
+        @RequestLine("GET /users")
+        String users();
+
+        @RequestLine("POST /users")
+        String create();
+    }
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger sent = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    // answers with the Authorization it was sent, once the test releases it
+    private Client server() {
+        return (request, options) -> {
+            sent.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Collection<String> authorization = request.headers().get("Authorization");
+            String body = authorization == null ? "anonymous" : authorization.iterator().next();
+            return Response.builder().status(200).headers(Collections.emptyMap()).request(request).body(body, Util.UTF_8).build();
+        };
+    }
+
+    private Future<String> submit(Client client, String methodName, String authorization) {
+        Map<String, Collection<String>> headers = new HashMap<>();
+        if (authorization != null)
+            headers.put("Authorization", Collections.singletonList(authorization));
+        Request request = Request.create(Request.HttpMethod.GET, "http://localhost:8081/users", headers, null, null);
+        return executor.submit(() -> {
+            MethodHandler handler = args -> {
+                Response response = client.execute(request, new Request.Options());
+                return Util.toString(response.body().asReader());
+            };
+            try {
+                return (String) new InvocationContext().decorate(Api.class.getMethod(methodName), handler).invoke(new Object[0]);
+            } catch (Throwable e) {
+                throw new Exception(e);
+            }
+        });
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.get() < count && System.nanoTime() < deadline)
+            Thread.sleep(5);
+        // lets any further call reach the server before counting
+        Thread.sleep(50);
+    }
+
+    private SingleFlight singleFlight() {
+        return new SingleFlight(Api.class, true, Arrays.asList("Authorization", "Cookie", "Accept"));
+    }
+
+    @Test
+    public void identicalCallsShareOneRequest() throws Exception {
+        Client client = singleFlight().client(server());
+        Future<String> first = submit(client, "users", "alice");
+        awaitSent(1);
+        Future<String> second = submit(client, "users", "alice");
+        awaitSent(1);
+        assertEquals(1, sent.get());
+
+        release.countDown();
+        assertEquals("alice", first.get());
+        // read from its own copy of the body
+        assertEquals("alice", second.get());
+    }
+
+    @Test
+    public void callsOfDifferentUsersAreNotShared() throws Exception {
+        Client client = singleFlight().client(server());
+        Future<String> alice = submit(client, "users", "alice");
+        awaitSent(1);
+        Future<String> bob = submit(client, "users", "bob");
+        awaitSent(2);
+        assertEquals(2, sent.get());
+
+        release.countDown();
+        assertEquals("alice", alice.get());
+        assertEquals("bob", bob.get());
+    }
+
+    @Test
+    public void nonIdempotentMethodsAreNotShared() throws Exception {
+        Client client = singleFlight().client(server());
+        Future<String> first = submit(client, "create", "alice");
+        awaitSent(1);
+        Future<String> second = submit(client, "create", "alice");
+        awaitSent(2);
+        assertEquals(2, sent.get());
+
+        release.countDown();
+        first.get();
+        second.get();
+    }
+}
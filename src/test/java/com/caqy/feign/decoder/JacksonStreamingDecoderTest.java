@@ -0,0 +1,119 @@
+package com.caqy.feign.decoder;
+
+import com.caqy.feign.Cursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Request;
+import feign.Response;
+import feign.codec.DecodeException;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class JacksonStreamingDecoderTest {
+
+    interface Api {
+        Cursor<Integer> cursor();
+
+        Stream<Integer> stream();
+
+        Iterator<Integer> iterator();
+    }
+
+    private final JacksonStreamingDecoder decoder = new JacksonStreamingDecoder(new ObjectMapper());
+
+    private static Type returnType(String method) throws NoSuchMethodException {
+        return Api.class.getMethod(method).getGenericReturnType();
+    }
+
+    private static Response response(int status, String body) {
+        return Response.builder()
+                .status(status)
+                .headers(Collections.emptyMap())
+                .request(Request.create(Request.HttpMethod.GET, "http://localhost/items", Collections.emptyMap(), null, null))
+                .body(body, StandardCharsets.UTF_8)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cursor<Integer> cursor(String body) throws Exception {
+        return (Cursor<Integer>) decoder.decode(response(200, body), returnType("cursor"));
+    }
+
+    private static List<Integer> drain(Iterator<Integer> iterator) {
+        List<Integer> result = new ArrayList<>();
+        iterator.forEachRemaining(result::add);
+        return result;
+    }
+
+    @Test
+    public void decodesEveryElement() throws Exception {
+        assertEquals(Arrays.asList(1, 2, 3), drain(cursor("[1,2,3]")));
+    }
+
+    @Test
+    public void keepsLeadingNullElement() throws Exception {
+        assertEquals(Arrays.asList(null, 1), drain(cursor("[null,1]")));
+    }
+
+    @Test
+    public void keepsTrailingNullElement() throws Exception {
+        Cursor<Integer> cursor = cursor("[1,null]");
+        assertTrue(cursor.hasNext());
+        assertEquals(Integer.valueOf(1), cursor.next());
+        assertTrue(cursor.hasNext());
+        assertNull(cursor.next());
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    public void hasNextDoesNotConsumeElements() throws Exception {
+        Cursor<Integer> cursor = cursor("[null,null]");
+        assertTrue(cursor.hasNext());
+        assertTrue(cursor.hasNext());
+        assertNull(cursor.next());
+        assertNull(cursor.next());
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void nextFailsOnceDrained() throws Exception {
+        Cursor<Integer> cursor = cursor("[]");
+        assertFalse(cursor.hasNext());
+        cursor.next();
+    }
+
+    @Test
+    public void emptyBodyIsEmpty() throws Exception {
+        assertFalse(cursor("").hasNext());
+    }
+
+    @Test
+    public void notFoundIsEmpty() throws Exception {
+        Object result = decoder.decode(response(404, "oops"), returnType("iterator"));
+        assertFalse(((Iterator<?>) result).hasNext());
+    }
+
+    @Test(expected = DecodeException.class)
+    public void rejectsBodyThatIsNotAnArray() throws Exception {
+        cursor("{\"a\":1}");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void streamsElements() throws Exception {
+        try (Stream<Integer> stream = (Stream<Integer>) decoder.decode(response(200, "[4,null,6]"), returnType("stream"))) {
+            assertEquals(Arrays.asList(4, null, 6), stream.collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.caqy.feign.hedging;
+
+import com.caqy.feign.InvocationContext;
+import feign.Client;
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.Request;
+import feign.Response;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okio.Timeout;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HedgingTest {
+
+    interface Api {
+        @Idempotent
+        String get();
+
+        String post();
+    }
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final FakeCall primaryCall = new FakeCall();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Response response(Request request, int status) {
+        return Response.builder().status(status).headers(Collections.emptyMap()).request(request).build();
+    }
+
+    // invokes the client the way feign does, inside the method handler of the interface method
+    private static Response call(Client client, String methodName) throws Throwable {
+        Request request = Request.create(Request.HttpMethod.GET, "http://localhost:8081/a", Collections.emptyMap(), null, null);
+        MethodHandler handler = args -> client.execute(request, new Request.Options());
+        return (Response) new InvocationContext().decorate(Api.class.getMethod(methodName), handler).invoke(new Object[0]);
+    }
+
+    private Client hedging(long delayMillis, double budgetPercent, Client delegate) {
+        return new Hedging(Api.class, null, executor, delayMillis, 100, budgetPercent).client(delegate);
+    }
+
+    // the primary attempt hangs until it is cancelled, the hedge answers right away
+    private Client slowPrimary() {
+        return (request, options) -> {
+            if (attempts.incrementAndGet() > 1)
+                return response(request, 202);
+            Hedging.register(primaryCall);
+            try {
+                if (!primaryCall.cancelled.await(5, TimeUnit.SECONDS))
+                    return response(request, 200);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            throw new HedgeCancelledException(new IOException("Canceled"));
+        };
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Test
+    public void hedgeWinsAndCancelsThePrimaryAttempt() throws Throwable {
+        Response response = call(hedging(20, 100, slowPrimary()), "get");
+        assertEquals(202, response.status());
+        assertEquals(2, attempts.get());
+        assertTrue(primaryCall.isCanceled());
+    }
+
+    @Test
+    public void fastPrimaryIsNotHedged() throws Throwable {
+        Client client = hedging(100, 100, (request, options) -> {
+            attempts.incrementAndGet();
+            return response(request, 200);
+        });
+        assertEquals(200, call(client, "get").status());
+        Thread.sleep(200);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void noHedgeWithoutBudget() throws Throwable {
+        Client client = hedging(10, 0, (request, options) -> {
+            attempts.incrementAndGet();
+            sleep(100);
+            return response(request, 200);
+        });
+        assertEquals(200, call(client, "get").status());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void onlyIdempotentMethodsAreHedged() throws Throwable {
+        Client client = hedging(10, 100, (request, options) -> {
+            attempts.incrementAndGet();
+            sleep(100);
+            return response(request, 200);
+        });
+        assertEquals(200, call(client, "post").status());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void failedPrimaryFallsBackToTheHedgeInFlight() throws Throwable {
+        Client client = hedging(10, 100, (request, options) -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(50);
+                throw new IOException("primary failed");
+            }
+            sleep(100);
+            return response(request, 202);
+        });
+        assertEquals(202, call(client, "get").status());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void failedPrimaryDropsThePendingHedge() throws Throwable {
+        Client client = hedging(50, 100, (request, options) -> {
+            attempts.incrementAndGet();
+            throw new IOException("primary failed");
+        });
+        try {
+            call(client, "get");
+            fail("expected the primary failure");
+        } catch (IOException e) {
+            assertEquals("primary failed", e.getMessage());
+        }
+        Thread.sleep(150);
+        assertEquals(1, attempts.get());
+    }
+
+    private static class FakeCall implements Call {
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+
+        @Override
+        public okhttp3.Request request() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public okhttp3.Response execute() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void enqueue(Callback responseCallback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.countDown();
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return true;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return cancelled.getCount() == 0;
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public Call clone() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.caqy.feign.resilience;
+
+import com.caqy.feign.metrics.MetricsRegistry;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBulkheadTest {
+
+    interface Api {
+    }
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private final MetricsRegistry registry = new MetricsRegistry() {
+        @Override
+        public Timer timer(String name) {
+            return nanos -> {
+            };
+        }
+
+        @Override
+        public Counter counter(String name) {
+            return () -> {
+            };
+        }
+
+        @Override
+        public void gauge(String name, LongSupplier value) {
+            gauges.put(name, value);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private static Request request(String url) {
+        return Request.create(Request.HttpMethod.GET, url, Collections.emptyMap(), null, null);
+    }
+
+    private static Response response(Request request, int status) {
+        return Response.builder().status(status).headers(Collections.emptyMap()).request(request).build();
+    }
+
+    // holds every call until the test releases them
+    private Client blocking() {
+        return (request, options) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return response(request, 200);
+        };
+    }
+
+    private Future<Response> submit(Client client, String url) {
+        return executor.submit(() -> client.execute(request(url), new Request.Options()));
+    }
+
+    private long gauge(String suffix) {
+        return gauges.get("client." + Api.class.getName() + ".bulkhead." + suffix).getAsLong();
+    }
+
+    private void awaitGauge(String suffix, long value) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gauges.get("client." + Api.class.getName() + ".bulkhead." + suffix) == null || gauge(suffix) != value) {
+            assertTrue("gauge " + suffix + " never reached " + value, System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void expectRejected(Future<Response> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("expected the call to be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), e.getCause() instanceof BulkheadFullException);
+        }
+    }
+
+    @Test
+    public void rejectsCallsOverTheLimitWithoutQueue() throws Exception {
+        Client client = new AdaptiveBulkhead(Api.class, registry, 2, 2, 0, 0).client(blocking());
+        Future<Response> first = submit(client, "http://localhost:8081/a");
+        Future<Response> second = submit(client, "http://localhost:8081/a");
+        awaitGauge("localhost:8081.inflight", 2);
+
+        expectRejected(submit(client, "http://localhost:8081/a"));
+
+        release.countDown();
+        assertEquals(200, first.get().status());
+        assertEquals(200, second.get().status());
+        assertEquals(200, submit(client, "http://localhost:8081/a").get().status());
+    }
+
+    @Test
+    public void queuedCallRunsOnceASlotIsReleased() throws Exception {
+        Client client = new AdaptiveBulkhead(Api.class, registry, 1, 1, 1, 5000).client(blocking());
+        Future<Response> first = submit(client, "http://localhost:8081/a");
+        awaitGauge("localhost:8081.inflight", 1);
+        Future<Response> queued = submit(client, "http://localhost:8081/a");
+        awaitGauge("localhost:8081.queued", 1);
+
+        // the queue holds a single call
+        expectRejected(submit(client, "http://localhost:8081/a"));
+
+        release.countDown();
+        assertEquals(200, first.get().status());
+        assertEquals(200, queued.get().status());
+    }
+
+    @Test
+    public void queuedCallIsRejectedAfterTheMaxWait() throws Exception {
+        Client client = new AdaptiveBulkhead(Api.class, registry, 1, 1, 1, 50).client(blocking());
+        submit(client, "http://localhost:8081/a");
+        awaitGauge("localhost:8081.inflight", 1);
+
+        long start = System.nanoTime();
+        expectRejected(submit(client, "http://localhost:8081/a"));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, gauge("localhost:8081.queued"));
+    }
+
+    @Test
+    public void limitsEachHostSeparately() throws Exception {
+        Client client = new AdaptiveBulkhead(Api.class, registry, 1, 1, 0, 0).client(blocking());
+        submit(client, "http://localhost:8081/a");
+        awaitGauge("localhost:8081.inflight", 1);
+        Future<Response> other = submit(client, "http://localhost:8082/a");
+        awaitGauge("localhost:8082.inflight", 1);
+
+        release.countDown();
+        assertEquals(200, other.get().status());
+    }
+
+    @Test
+    public void shrinksTheLimitOnServerErrors() throws IOException {
+        Client client = new AdaptiveBulkhead(Api.class, registry, 10, 20, 0, 0).client((request, options) -> response(request, 503));
+        for (int i = 0; i < 5; i++)
+            client.execute(request("http://localhost:8081/a"), new Request.Options());
+        assertTrue(gauge("localhost:8081.limit") < 10);
+    }
+
+    @Test
+    public void growsTheLimitWhileItIsUsed() throws IOException {
+        // one call at a time uses a limit of 1 fully, and half of a limit of 2
+        Client client = new AdaptiveBulkhead(Api.class, registry, 1, 20, 0, 0).client((request, options) -> response(request, 200));
+        for (int i = 0; i < 20; i++)
+            client.execute(request("http://localhost:8081/a"), new Request.Options());
+        assertEquals(2, gauge("localhost:8081.limit"));
+    }
+
+    @Test
+    public void neverGrowsPastTheMaxLimit() throws IOException {
+        Client client = new AdaptiveBulkhead(Api.class, registry, 1, 1, 0, 0).client((request, options) -> response(request, 200));
+        for (int i = 0; i < 200; i++)
+            client.execute(request("http://localhost:8081/a"), new Request.Options());
+        assertEquals(1, gauge("localhost:8081.limit"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.caqy.feign.resilience;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 50;
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(3, OPEN_MILLIS);
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            assertNotEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+            circuitBreaker.onFailure();
+        }
+    }
+
+    @Test
+    public void staysClosedBelowTheThreshold() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertNotEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+    }
+
+    @Test
+    public void successResetsConsecutiveFailures() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertNotEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+    }
+
+    @Test
+    public void opensAtTheThreshold() {
+        open();
+        assertEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+    }
+
+    @Test
+    public void letsOneProbeThroughOnceTheOpenPeriodIsOver() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertEquals(CircuitBreaker.PROBE, circuitBreaker.acquire());
+        assertEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+    }
+
+    @Test
+    public void successfulProbeClosesTheCircuit() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertNotEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+        circuitBreaker.onSuccess();
+        assertNotEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+        assertNotEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+    }
+
+    @Test
+    public void failedProbeOpensTheCircuitAgain() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertNotEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertNotEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+    }
+
+    @Test
+    public void releasedProbeLetsTheNextCallProbe() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertEquals(CircuitBreaker.PROBE, circuitBreaker.acquire());
+        circuitBreaker.releaseProbe();
+        assertEquals(CircuitBreaker.PROBE, circuitBreaker.acquire());
+        circuitBreaker.onSuccess();
+        assertNotEquals(CircuitBreaker.REJECTED, circuitBreaker.acquire());
+    }
+}
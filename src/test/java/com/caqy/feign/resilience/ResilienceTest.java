@@ -0,0 +1,194 @@
+package com.caqy.feign.resilience;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.RetryableException;
+import feign.Retryer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResilienceTest {
+
+    private static final long OPEN_MILLIS = 50;
+
+    private static Request request(String url) {
+        return Request.create(Request.HttpMethod.GET, url, Collections.emptyMap(), null, null);
+    }
+
+    private static Response response(Request request, int status) {
+        return Response.builder().status(status).headers(Collections.emptyMap()).request(request).build();
+    }
+
+    private static Client failing(AtomicInteger calls) {
+        return (request, options) -> {
+            calls.incrementAndGet();
+            throw new IOException("connection reset");
+        };
+    }
+
+    private static void expect(Class<? extends IOException> type, Client client, Request request) {
+        try {
+            client.execute(request, new Request.Options());
+            fail("expected " + type.getSimpleName());
+        } catch (IOException e) {
+            assertTrue(e.toString(), type.isInstance(e));
+        }
+    }
+
+    @Test
+    public void opensTheCircuitOfTheFailingEndpointOnly() throws IOException {
+        AtomicInteger calls = new AtomicInteger();
+        Client client = new Resilience(1, 0, 0, 0, 2, OPEN_MILLIS).client((request, options) -> {
+            if (request.url().startsWith("http://localhost:8081"))
+                return failing(calls).execute(request, options);
+            return response(request, 200);
+        });
+        Request bad = request("http://localhost:8081/x");
+        expect(IOException.class, client, bad);
+        expect(IOException.class, client, bad);
+        expect(CircuitBreakerOpenException.class, client, bad);
+        assertEquals(2, calls.get());
+
+        Request good = request("http://localhost:8082/x");
+        assertEquals(200, client.execute(good, new Request.Options()).status());
+    }
+
+    @Test
+    public void countsServerErrorsAsFailures() throws IOException {
+        Client client = new Resilience(1, 0, 0, 0, 2, OPEN_MILLIS).client((request, options) -> response(request, 503));
+        Request request = request("http://localhost:8081/x");
+        client.execute(request, new Request.Options());
+        client.execute(request, new Request.Options());
+        expect(CircuitBreakerOpenException.class, client, request);
+    }
+
+    @Test
+    public void probeRejectedByTheBulkheadDoesNotKeepTheCircuitOpen() throws Exception {
+        AtomicInteger mode = new AtomicInteger();
+        Client client = new Resilience(1, 0, 0, 0, 1, OPEN_MILLIS).client((request, options) -> {
+            switch (mode.get()) {
+                case 0:
+                    throw new IOException("connection reset");
+                case 1:
+                    throw new BulkheadFullException("localhost:8081");
+                default:
+                    return response(request, 200);
+            }
+        });
+        Request request = request("http://localhost:8081/x");
+        expect(IOException.class, client, request);
+        expect(CircuitBreakerOpenException.class, client, request);
+
+        Thread.sleep(OPEN_MILLIS + 10);
+        mode.set(1);
+        expect(BulkheadFullException.class, client, request);
+        mode.set(2);
+        assertEquals(200, client.execute(request, new Request.Options()).status());
+        assertEquals(200, client.execute(request, new Request.Options()).status());
+    }
+
+    @Test
+    public void rejectionOfAnotherCallKeepsTheProbeInFlight() throws Exception {
+        CountDownLatch rejectEntered = new CountDownLatch(1);
+        CountDownLatch rejectLatch = new CountDownLatch(1);
+        CountDownLatch probeEntered = new CountDownLatch(1);
+        CountDownLatch probeLatch = new CountDownLatch(1);
+        Client client = new Resilience(1, 0, 0, 0, 1, OPEN_MILLIS).client((request, options) -> {
+            try {
+                if (request.url().endsWith("/reject")) {
+                    rejectEntered.countDown();
+                    rejectLatch.await();
+                    throw new BulkheadFullException("localhost:8081");
+                }
+                if (request.url().endsWith("/probe")) {
+                    probeEntered.countDown();
+                    probeLatch.await();
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (request.url().endsWith("/fail"))
+                throw new IOException("connection reset");
+            return response(request, 200);
+        });
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            // let through while the circuit is closed, rejected by the bulkhead only once the probe is in flight
+            Future<?> rejected = executor.submit(() -> client.execute(request("http://localhost:8081/reject"), new Request.Options()));
+            assertTrue(rejectEntered.await(5, TimeUnit.SECONDS));
+            expect(IOException.class, client, request("http://localhost:8081/fail"));
+            Thread.sleep(OPEN_MILLIS + 10);
+            Future<Response> probe = executor.submit(() -> client.execute(request("http://localhost:8081/probe"), new Request.Options()));
+            assertTrue(probeEntered.await(5, TimeUnit.SECONDS));
+            rejectLatch.countDown();
+            try {
+                rejected.get(5, TimeUnit.SECONDS);
+                fail("expected the bulkhead rejection");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof BulkheadFullException);
+            }
+
+            expect(CircuitBreakerOpenException.class, client, request("http://localhost:8081/x"));
+            probeLatch.countDown();
+            assertEquals(200, probe.get(5, TimeUnit.SECONDS).status());
+            assertEquals(200, client.execute(request("http://localhost:8081/x"), new Request.Options()).status());
+        } finally {
+            probeLatch.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void retriesUpToMaxAttempts() {
+        Retryer retryer = new Resilience(3, 0, 0, 0, 0, OPEN_MILLIS).retryer();
+        RetryableException e = new RetryableException("reset", Request.HttpMethod.GET, new IOException("reset"), null);
+        retryer.continueOrPropagate(e);
+        retryer.continueOrPropagate(e);
+        try {
+            retryer.continueOrPropagate(e);
+            fail("expected the third retry to be refused");
+        } catch (RetryableException refused) {
+            assertSame(e, refused);
+        }
+    }
+
+    @Test
+    public void failureBeforeTheClientIsNotChargedToAnEarlierHost() {
+        Resilience resilience = new Resilience(3, 0, 0, 1, 0, OPEN_MILLIS);
+        Retryer prototype = resilience.retryer();
+        Client client = resilience.client(failing(new AtomicInteger()));
+        RetryableException reset = new RetryableException("reset", Request.HttpMethod.GET, new IOException("reset"), null);
+
+        // takes the only retry of localhost:8081 this second
+        Retryer first = prototype.clone();
+        expect(IOException.class, client, request("http://localhost:8081/x"));
+        first.continueOrPropagate(reset);
+
+        // feign clones the retryer for every call, a failure before client() has no host to charge
+        prototype.clone().continueOrPropagate(reset);
+    }
+
+    @Test(expected = RetryableException.class)
+    public void doesNotRetryAnOpenCircuit() {
+        new Resilience(3, 0, 0, 0, 0, OPEN_MILLIS).retryer().continueOrPropagate(
+                new RetryableException("open", Request.HttpMethod.GET, new CircuitBreakerOpenException("localhost:8081"), null));
+    }
+
+    @Test(expected = RetryableException.class)
+    public void doesNotRetryAPostThatMayHaveReachedTheServer() {
+        new Resilience(3, 0, 0, 0, 0, OPEN_MILLIS).retryer().continueOrPropagate(
+                new RetryableException("reset", Request.HttpMethod.POST, new IOException("reset"), null));
+    }
+}
@@ -0,0 +1,104 @@
+package com.caqy.feign.streaming;
+
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SynchronousCallLimiterTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final OkHttpClient client = new OkHttpClient();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Call newCall() {
+        return client.newCall(new Request.Builder().url("http://localhost:8081/a").build());
+    }
+
+    private static Dispatcher dispatcher(int maxRequestsPerHost) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return dispatcher;
+    }
+
+    @Test
+    public void onlyRegisteredDispatchersAreLimited() {
+        Dispatcher dispatcher = dispatcher(1);
+        assertNull(SynchronousCallLimiter.of(dispatcher));
+        SynchronousCallLimiter.limit(dispatcher);
+        assertNotNull(SynchronousCallLimiter.of(dispatcher));
+    }
+
+    @Test
+    public void waitIsBoundedByTheTimeout() throws IOException {
+        Dispatcher dispatcher = dispatcher(1);
+        SynchronousCallLimiter.limit(dispatcher);
+        SynchronousCallLimiter limiter = SynchronousCallLimiter.of(dispatcher);
+        limiter.acquire("localhost", dispatcher, newCall(), 0);
+
+        long start = System.nanoTime();
+        try {
+            limiter.acquire("localhost", dispatcher, newCall(), TimeUnit.MILLISECONDS.toNanos(50));
+            fail("expected a timeout");
+        } catch (InterruptedIOException e) {
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        // other hosts are not affected
+        limiter.acquire("example.com", dispatcher, newCall(), TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void releaseLetsAWaiterIn() throws Exception {
+        Dispatcher dispatcher = dispatcher(1);
+        SynchronousCallLimiter.limit(dispatcher);
+        SynchronousCallLimiter limiter = SynchronousCallLimiter.of(dispatcher);
+        limiter.acquire("localhost", dispatcher, newCall(), 0);
+
+        Future<?> waiter = executor.submit(() -> {
+            limiter.acquire("localhost", dispatcher, newCall(), TimeUnit.SECONDS.toNanos(5));
+            return null;
+        });
+        Thread.sleep(50);
+        assertFalse(waiter.isDone());
+        limiter.release("localhost");
+        waiter.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void cancelWakesUpTheWaiter() throws Exception {
+        Dispatcher dispatcher = dispatcher(1);
+        SynchronousCallLimiter.limit(dispatcher);
+        SynchronousCallLimiter limiter = SynchronousCallLimiter.of(dispatcher);
+        limiter.acquire("localhost", dispatcher, newCall(), 0);
+
+        Call call = newCall();
+        Future<?> waiter = executor.submit(() -> {
+            limiter.acquire("localhost", dispatcher, call, 0);
+            return null;
+        });
+        Thread.sleep(50);
+        limiter.cancellable(call).cancel();
+        try {
+            waiter.get(1, TimeUnit.SECONDS);
+            fail("expected the cancelled call to give up");
+        } catch (ExecutionException e) {
+            assertEquals("Canceled", e.getCause().getMessage());
+        }
+    }
+}